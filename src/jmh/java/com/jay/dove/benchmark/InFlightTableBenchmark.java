@@ -0,0 +1,106 @@
+package com.jay.dove.benchmark;
+
+import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.transport.callback.DefaultInvokeFuture;
+import com.jay.dove.transport.callback.InvokeFuture;
+import com.jay.dove.transport.connection.InFlightTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  {@link InFlightTable} vs the ConcurrentHashMap it replaced as a connection's invoke future table.
+ *  Callers share one id sequence like a command factory, each keeps its own requests in flight,
+ *  and every operation registers a new request and removes its oldest one like a response does.
+ *  Run with: mvn -Pjmh compile exec:exec -Djmh.args="InFlightTable"
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/18 16:40
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class InFlightTableBenchmark {
+    /**
+     * requests in flight of each caller
+     */
+    @Param({"16", "256"})
+    private int window;
+
+    private final InvokeFuture future = new DefaultInvokeFuture(null);
+    private AtomicInteger ids;
+    private InFlightTable table;
+    private ConcurrentHashMap<Integer, InvokeFuture> map;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        ids = new AtomicInteger(0);
+        table = new InFlightTable(DoveConfigs.maxInFlight());
+        map = new ConcurrentHashMap<>(256);
+    }
+
+    @State(Scope.Thread)
+    public static class Caller{
+        private int[] inFlight;
+        private int next;
+        private int size;
+
+        @Setup(Level.Iteration)
+        public void setup(InFlightTableBenchmark benchmark){
+            inFlight = new int[benchmark.window];
+            next = 0;
+            size = 0;
+        }
+
+        /**
+         * track a new request
+         * @param id request id
+         * @return id of the oldest request to remove, -1 if window is not full yet
+         */
+        int track(int id){
+            int oldest = size == inFlight.length ? inFlight[next] : -1;
+            if(size < inFlight.length){
+                size++;
+            }
+            inFlight[next] = id;
+            next = next + 1 == inFlight.length ? 0 : next + 1;
+            return oldest;
+        }
+    }
+
+    @Benchmark
+    public InvokeFuture inFlightTable(Caller caller){
+        int id = ids.getAndIncrement();
+        table.put(id, future);
+        int oldest = caller.track(id);
+        return oldest == -1 ? null : table.remove(oldest);
+    }
+
+    @Benchmark
+    public InvokeFuture concurrentHashMap(Caller caller){
+        int id = ids.getAndIncrement();
+        map.put(id, future);
+        int oldest = caller.track(id);
+        return oldest == -1 ? null : map.remove(oldest);
+    }
+}
@@ -0,0 +1,108 @@
+package com.jay.dove.benchmark;
+
+import com.jay.dove.DoveClient;
+import com.jay.dove.DoveServer;
+import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.transport.Url;
+import com.jay.dove.transport.callback.SpinYieldParkWaitStrategy;
+import com.jay.dove.transport.callback.WaitStrategy;
+import com.jay.dove.transport.command.AbstractProcessor;
+import com.jay.dove.transport.command.CommandCode;
+import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.transport.connection.ConnectionManager;
+import com.jay.dove.transport.protocol.ProtocolManager;
+import com.jay.dove.transport.protocol.rpc.RpcCodec;
+import com.jay.dove.transport.protocol.rpc.RpcCommandFactory;
+import com.jay.dove.transport.protocol.rpc.RpcConnectionFactory;
+import com.jay.dove.transport.protocol.rpc.RpcProtocol;
+import io.netty.channel.ChannelHandlerContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *  Latency of sync calls to an echo server over loopback, with {@link WaitStrategy#BLOCKING}
+ *  and {@link SpinYieldParkWaitStrategy} on the caller.
+ *  Sample time mode reports p50 and p99 of each strategy.
+ *  Run with: mvn -Pjmh compile exec:exec -Djmh.args="WaitStrategy"
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/18 17:05
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WaitStrategyBenchmark {
+    private static final CommandCode ECHO = new CommandCode((short) 1);
+    private static final int PORT = 9527;
+
+    @Param({"blocking", SpinYieldParkWaitStrategy.NAME})
+    private String strategy;
+
+    private ExecutorService executor;
+    private DoveServer server;
+    private DoveClient client;
+    private RpcCommandFactory commandFactory;
+    private Url url;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception{
+        commandFactory = new RpcCommandFactory((byte) 1);
+        RpcProtocol protocol = new RpcProtocol(commandFactory);
+        ProtocolManager.registerProtocol(RpcProtocol.CODE, protocol);
+        executor = Executors.newFixedThreadPool(4);
+        protocol.getCommandHandler().registerDefaultExecutor(executor);
+        protocol.getCommandHandler().registerProcessor(ECHO, new AbstractProcessor() {
+            @Override
+            public void process(ChannelHandlerContext context, Object msg) {
+                RemotingCommand request = (RemotingCommand) msg;
+                sendResponse(context, commandFactory.createResponse(request.getId(), request.getContent(), ECHO));
+            }
+        });
+        server = new DoveServer(new RpcCodec(), PORT, commandFactory);
+        server.startup();
+
+        client = new DoveClient(new ConnectionManager(new RpcConnectionFactory()), commandFactory);
+        if(SpinYieldParkWaitStrategy.NAME.equals(strategy)){
+            client.setWaitStrategy(new SpinYieldParkWaitStrategy(DoveConfigs.syncWaitSpins(), DoveConfigs.syncWaitYields()));
+        }else{
+            client.setWaitStrategy(WaitStrategy.BLOCKING);
+        }
+        url = Url.parseString("127.0.0.1:" + PORT + "?conn=1");
+        body = new byte[64];
+        // connect before measuring
+        sendSync();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        client.shutdown();
+        server.shutdown();
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public RemotingCommand sendSync() throws Exception{
+        return client.sendSync(url, commandFactory.createRequest(body, ECHO), null);
+    }
+}
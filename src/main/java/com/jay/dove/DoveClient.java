@@ -1,15 +1,20 @@
 package com.jay.dove;
 
+import com.jay.dove.config.DoveConfigs;
 import com.jay.dove.transport.BaseRemoting;
+import com.jay.dove.transport.MicroBatcher;
 import com.jay.dove.transport.Url;
 import com.jay.dove.transport.callback.InvokeCallback;
 import com.jay.dove.transport.callback.InvokeFuture;
+import com.jay.dove.transport.callback.WaitStrategy;
 import com.jay.dove.transport.command.CommandFactory;
 import com.jay.dove.transport.command.RemotingCommand;
 import com.jay.dove.transport.connection.Connection;
 import com.jay.dove.transport.connection.ConnectionManager;
 
 import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 /**
  * <p>
@@ -27,11 +32,44 @@ public class DoveClient {
     private final ConnectionManager connectionManager;
     private final CommandFactory commandFactory;
     private final BaseRemoting baseRemoting;
+    /**
+     * micro batcher of async requests, null if disabled
+     */
+    private volatile MicroBatcher microBatcher;
 
     public DoveClient(ConnectionManager connectionManager, CommandFactory commandFactory) {
         this.connectionManager = connectionManager;
         this.commandFactory = commandFactory;
         this.baseRemoting = new BaseRemoting(commandFactory);
+        this.baseRemoting.setWaitStrategy(WaitStrategy.fromConfig());
+        if(DoveConfigs.microBatching()){
+            enableMicroBatching(DoveConfigs.microBatchingMaxBatch(), DoveConfigs.microBatchingMaxDelay());
+        }
+    }
+
+    /**
+     * send async requests of the same url and command code in micro batches
+     * @param maxBatch max requests in one batch
+     * @param maxDelayMicros max time a request waits for its batch under load, microseconds
+     */
+    public void enableMicroBatching(int maxBatch, long maxDelayMicros){
+        this.microBatcher = new MicroBatcher(baseRemoting, maxBatch, maxDelayMicros);
+    }
+
+    /**
+     * set how sendSync waits for response
+     * @param waitStrategy {@link WaitStrategy}
+     */
+    public void setWaitStrategy(WaitStrategy waitStrategy){
+        this.baseRemoting.setWaitStrategy(waitStrategy);
+    }
+
+    /**
+     * get micro batcher and its counters
+     * @return {@link MicroBatcher}, null if micro batching is disabled
+     */
+    public MicroBatcher getMicroBatcher(){
+        return microBatcher;
     }
 
     /**
@@ -66,6 +104,10 @@ public class DoveClient {
      */
     public InvokeFuture sendFuture(Url url, RemotingCommand command, InvokeCallback callback) throws ConnectException{
         Connection connection = connectionManager.getConnectionAndCreateIfAbsent(url);
+        MicroBatcher batcher = this.microBatcher;
+        if(batcher != null){
+            return batcher.submit(connection, command, callback);
+        }
         return this.baseRemoting.sendFuture(connection, command, callback);
     }
 
@@ -77,9 +119,41 @@ public class DoveClient {
      */
     public void sendAsync(Url url, RemotingCommand command, InvokeCallback callback) throws ConnectException{
         Connection connection = connectionManager.getConnectionAndCreateIfAbsent(url);
+        MicroBatcher batcher = this.microBatcher;
+        if(batcher != null && callback != null){
+            batcher.submit(connection, command, callback);
+            return;
+        }
         this.baseRemoting.sendAsync(connection, command, callback);
     }
 
+    /**
+     * send request asynchronously, the returned stage completes with the response
+     * @param url {@link Url}
+     * @param command {@link RemotingCommand}
+     * @return {@link CompletionStage}
+     */
+    public CompletionStage<RemotingCommand> sendAsync(Url url, RemotingCommand command) throws ConnectException{
+        Connection connection = connectionManager.getConnectionAndCreateIfAbsent(url);
+        MicroBatcher batcher = this.microBatcher;
+        if(batcher != null){
+            return batcher.submit(connection, command, null).toCompletionStage();
+        }
+        return this.baseRemoting.sendAsync(connection, command);
+    }
+
+    /**
+     * send multiple requests to target url in one frame
+     * @param url {@link Url}
+     * @param commands {@link RemotingCommand}s
+     * @param callback {@link InvokeCallback} callback of every request
+     * @return {@link InvokeFuture}s in the order of commands
+     */
+    public List<InvokeFuture> sendBatch(Url url, List<RemotingCommand> commands, InvokeCallback callback) throws ConnectException{
+        Connection connection = connectionManager.getConnectionAndCreateIfAbsent(url);
+        return this.baseRemoting.sendBatch(connection, commands, callback);
+    }
+
     public CommandFactory getCommandFactory(){
         return commandFactory;
     }
@@ -79,6 +79,249 @@ public class DoveConfigs {
     public static final String ENABLE_SSL = "dove.enable_ssl";
     public static final boolean ENABLE_SSL_DEFAULT = true;
 
+    /**
+     * max length of one decoded frame, bytes
+     */
+    public static final String MAX_FRAME_LENGTH = "dove.max_frame_length";
+    public static final int MAX_FRAME_LENGTH_DEFAULT = 16 * 1024 * 1024;
+
+    /**
+     * decode content as retained slices of the inbound frame instead of byte[]
+     */
+    public static final String ZERO_COPY_PAYLOAD = "dove.zero_copy_payload";
+    public static final boolean ZERO_COPY_PAYLOAD_DEFAULT = false;
+
+    /**
+     * coalesce connection writes and flush them in batches on event loop
+     */
+    public static final String WRITE_COALESCING = "dove.write_coalescing";
+    public static final boolean WRITE_COALESCING_DEFAULT = false;
+
+    /**
+     * max writes flushed at once by write coalescing
+     */
+    public static final String WRITE_COALESCING_MAX_BATCH = "dove.write_coalescing_max_batch";
+    public static final int WRITE_COALESCING_MAX_BATCH_DEFAULT = 64;
+
+    /**
+     * latency budget of write coalescing, microseconds
+     */
+    public static final String WRITE_COALESCING_MAX_DELAY = "dove.write_coalescing_max_delay";
+    public static final int WRITE_COALESCING_MAX_DELAY_DEFAULT = 0;
+
+    /**
+     * group async requests of the same url and command code into batches on client side
+     */
+    public static final String MICRO_BATCHING = "dove.micro_batching";
+    public static final boolean MICRO_BATCHING_DEFAULT = false;
+
+    /**
+     * max requests in one micro batch
+     */
+    public static final String MICRO_BATCHING_MAX_BATCH = "dove.micro_batching_max_batch";
+    public static final int MICRO_BATCHING_MAX_BATCH_DEFAULT = 64;
+
+    /**
+     * max time a request waits for its micro batch under load, microseconds
+     */
+    public static final String MICRO_BATCHING_MAX_DELAY = "dove.micro_batching_max_delay";
+    public static final int MICRO_BATCHING_MAX_DELAY_DEFAULT = 50;
+
+    /**
+     * max in-flight requests of one connection, sizes the connection's in-flight table and limits sends with backpressure
+     */
+    public static final String MAX_IN_FLIGHT = "dove.max_in_flight";
+    public static final int MAX_IN_FLIGHT_DEFAULT = 4096;
+
+    /**
+     * number of timer wheels for request timeouts
+     */
+    public static final String TIMER_SHARDS = "dove.timer_shards";
+    public static final int TIMER_SHARDS_DEFAULT = 4;
+
+    /**
+     * tick duration of timer wheels, ms
+     */
+    public static final String TIMER_TICK = "dove.timer_tick";
+    public static final int TIMER_TICK_DEFAULT = 10;
+
+    /**
+     * wait strategy of sync calls, blocking or spin_yield_park
+     */
+    public static final String SYNC_WAIT_STRATEGY = "dove.sync_wait_strategy";
+    public static final String SYNC_WAIT_STRATEGY_DEFAULT = "blocking";
+
+    /**
+     * busy-spin checks of spin_yield_park strategy
+     */
+    public static final String SYNC_WAIT_SPINS = "dove.sync_wait_spins";
+    public static final int SYNC_WAIT_SPINS_DEFAULT = 1000;
+
+    /**
+     * yield checks of spin_yield_park strategy
+     */
+    public static final String SYNC_WAIT_YIELDS = "dove.sync_wait_yields";
+    public static final int SYNC_WAIT_YIELDS_DEFAULT = 100;
+
+    /**
+     * process each command on its own virtual thread, requires Java 21+
+     */
+    public static final String VIRTUAL_THREAD_EXECUTOR = "dove.virtual_thread_executor";
+    public static final boolean VIRTUAL_THREAD_EXECUTOR_DEFAULT = false;
+
+    /**
+     * client backpressure mode when a connection reaches its limits: none, block, fail_fast or queue
+     */
+    public static final String BACKPRESSURE_MODE = "dove.backpressure_mode";
+    public static final String BACKPRESSURE_MODE_DEFAULT = "none";
+
+    /**
+     * max sends waiting in queue mode of one connection
+     */
+    public static final String BACKPRESSURE_QUEUE_SIZE = "dove.backpressure_queue_size";
+    public static final int BACKPRESSURE_QUEUE_SIZE_DEFAULT = 1024;
+
+    /**
+     * max pending outbound bytes of one connection, the high water mark of write buffer.
+     * Low water mark is half of it
+     */
+    public static final String MAX_PENDING_BYTES = "dove.max_pending_bytes";
+    public static final int MAX_PENDING_BYTES_DEFAULT = 1024 * 1024;
+
+    /**
+     * pause reading connections when dispatched commands are not processed in time
+     */
+    public static final String SERVER_READ_THROTTLE = "dove.server.read_throttle";
+    public static final boolean SERVER_READ_THROTTLE_DEFAULT = false;
+
+    /**
+     * pending commands of one connection to pause and resume its reading
+     */
+    public static final String SERVER_CONNECTION_PENDING_HIGH = "dove.server.connection_pending_high";
+    public static final int SERVER_CONNECTION_PENDING_HIGH_DEFAULT = 1024;
+    public static final String SERVER_CONNECTION_PENDING_LOW = "dove.server.connection_pending_low";
+    public static final int SERVER_CONNECTION_PENDING_LOW_DEFAULT = 512;
+
+    /**
+     * pending commands of all connections to pause and resume reading all connections
+     */
+    public static final String SERVER_GLOBAL_PENDING_HIGH = "dove.server.global_pending_high";
+    public static final int SERVER_GLOBAL_PENDING_HIGH_DEFAULT = 16384;
+    public static final String SERVER_GLOBAL_PENDING_LOW = "dove.server.global_pending_low";
+    public static final int SERVER_GLOBAL_PENDING_LOW_DEFAULT = 8192;
+
+    /**
+     * adaptive concurrency limit of each command code on server: none, vegas or gradient
+     */
+    public static final String SERVER_CONCURRENCY_LIMIT = "dove.server.concurrency_limit";
+    public static final String SERVER_CONCURRENCY_LIMIT_DEFAULT = "none";
+
+    /**
+     * initial, min and max concurrency limit of each command code
+     */
+    public static final String SERVER_CONCURRENCY_LIMIT_INITIAL = "dove.server.concurrency_limit_initial";
+    public static final int SERVER_CONCURRENCY_LIMIT_INITIAL_DEFAULT = 20;
+    public static final String SERVER_CONCURRENCY_LIMIT_MIN = "dove.server.concurrency_limit_min";
+    public static final int SERVER_CONCURRENCY_LIMIT_MIN_DEFAULT = 4;
+    public static final String SERVER_CONCURRENCY_LIMIT_MAX = "dove.server.concurrency_limit_max";
+    public static final int SERVER_CONCURRENCY_LIMIT_MAX_DEFAULT = 1000;
+
+    /**
+     * run commands in order of their keys on a work-stealing pool instead of default executor
+     */
+    public static final String SERVER_ORDERED_EXECUTOR = "dove.server.ordered_executor";
+    public static final boolean SERVER_ORDERED_EXECUTOR_DEFAULT = false;
+
+    /**
+     * threads of ordered executor, 0 for available processors
+     */
+    public static final String SERVER_ORDERED_EXECUTOR_PARALLELISM = "dove.server.ordered_executor_parallelism";
+    public static final int SERVER_ORDERED_EXECUTOR_PARALLELISM_DEFAULT = 0;
+
+    /**
+     * serial lanes of ordered executor, keys hashed to the same lane are serialized
+     */
+    public static final String SERVER_ORDERED_EXECUTOR_LANES = "dove.server.ordered_executor_lanes";
+    public static final int SERVER_ORDERED_EXECUTOR_LANES_DEFAULT = 1024;
+
+    /**
+     * run commands of default executor earliest deadline first, expired commands are dropped in bulk
+     */
+    public static final String SERVER_DEADLINE_SCHEDULING = "dove.server.deadline_scheduling";
+    public static final boolean SERVER_DEADLINE_SCHEDULING_DEFAULT = false;
+
+    /**
+     * max commands waiting in deadline queue
+     */
+    public static final String SERVER_DEADLINE_QUEUE_SIZE = "dove.server.deadline_queue_size";
+    public static final int SERVER_DEADLINE_QUEUE_SIZE_DEFAULT = 65536;
+
+    /**
+     * codel scheduling of default executor's commands by their queue sojourn
+     */
+    public static final String SERVER_CODEL = "dove.server.codel";
+    public static final boolean SERVER_CODEL_DEFAULT = false;
+
+    /**
+     * what codel does when overloaded: shed or lifo
+     */
+    public static final String SERVER_CODEL_MODE = "dove.server.codel_mode";
+    public static final String SERVER_CODEL_MODE_DEFAULT = "shed";
+
+    /**
+     * target sojourn and interval of codel, ms
+     */
+    public static final String SERVER_CODEL_TARGET = "dove.server.codel_target";
+    public static final int SERVER_CODEL_TARGET_DEFAULT = 5;
+    public static final String SERVER_CODEL_INTERVAL = "dove.server.codel_interval";
+    public static final int SERVER_CODEL_INTERVAL_DEFAULT = 100;
+
+    /**
+     * max commands waiting in codel queue
+     */
+    public static final String SERVER_CODEL_QUEUE_SIZE = "dove.server.codel_queue_size";
+    public static final int SERVER_CODEL_QUEUE_SIZE_DEFAULT = 65536;
+
+    /**
+     * token bucket rate limits of connections and remote addresses on server
+     */
+    public static final String SERVER_RATE_LIMIT = "dove.server.rate_limit";
+    public static final boolean SERVER_RATE_LIMIT_DEFAULT = false;
+
+    /**
+     * commands per second and burst of each connection, 0 for no limit
+     */
+    public static final String SERVER_CONNECTION_RATE = "dove.server.connection_rate";
+    public static final int SERVER_CONNECTION_RATE_DEFAULT = 0;
+    public static final String SERVER_CONNECTION_BURST = "dove.server.connection_burst";
+    public static final int SERVER_CONNECTION_BURST_DEFAULT = 1000;
+
+    /**
+     * commands per second and burst of each remote address, 0 for no limit
+     */
+    public static final String SERVER_ADDRESS_RATE = "dove.server.address_rate";
+    public static final int SERVER_ADDRESS_RATE_DEFAULT = 0;
+    public static final String SERVER_ADDRESS_BURST = "dove.server.address_burst";
+    public static final int SERVER_ADDRESS_BURST_DEFAULT = 1000;
+
+    /**
+     * share default executor across connections by weighted deficit round robin
+     */
+    public static final String SERVER_FAIR_QUEUING = "dove.server.fair_queuing";
+    public static final boolean SERVER_FAIR_QUEUING_DEFAULT = false;
+
+    /**
+     * commands a connection of weight 1 runs in its turn
+     */
+    public static final String SERVER_FAIR_QUANTUM = "dove.server.fair_quantum";
+    public static final int SERVER_FAIR_QUANTUM_DEFAULT = 8;
+
+    /**
+     * max commands waiting in fair queues
+     */
+    public static final String SERVER_FAIR_QUEUE_SIZE = "dove.server.fair_queue_size";
+    public static final int SERVER_FAIR_QUEUE_SIZE_DEFAULT = 65536;
+
     public static boolean soKeepAlive(){
         Boolean keepAlive = ConfigManager.getBoolean(TCP_SO_KEEP_ALIVE);
         return keepAlive != null ? keepAlive : TCP_SO_KEEP_ALIVE_DEFAULT;
@@ -129,6 +372,231 @@ public class DoveConfigs {
         return enable != null ? enable : ENABLE_SSL_DEFAULT;
     }
 
+    public static int maxFrameLength(){
+        Integer length = ConfigManager.getInteger(MAX_FRAME_LENGTH);
+        return length != null ? length : MAX_FRAME_LENGTH_DEFAULT;
+    }
+
+    public static boolean zeroCopyPayload(){
+        Boolean enable = ConfigManager.getBoolean(ZERO_COPY_PAYLOAD);
+        return enable != null ? enable : ZERO_COPY_PAYLOAD_DEFAULT;
+    }
+
+    public static boolean writeCoalescing(){
+        Boolean enable = ConfigManager.getBoolean(WRITE_COALESCING);
+        return enable != null ? enable : WRITE_COALESCING_DEFAULT;
+    }
+
+    public static int writeCoalescingMaxBatch(){
+        Integer batch = ConfigManager.getInteger(WRITE_COALESCING_MAX_BATCH);
+        return batch != null ? batch : WRITE_COALESCING_MAX_BATCH_DEFAULT;
+    }
+
+    public static int writeCoalescingMaxDelay(){
+        Integer delay = ConfigManager.getInteger(WRITE_COALESCING_MAX_DELAY);
+        return delay != null ? delay : WRITE_COALESCING_MAX_DELAY_DEFAULT;
+    }
+
+    public static boolean microBatching(){
+        Boolean enable = ConfigManager.getBoolean(MICRO_BATCHING);
+        return enable != null ? enable : MICRO_BATCHING_DEFAULT;
+    }
+
+    public static int microBatchingMaxBatch(){
+        Integer batch = ConfigManager.getInteger(MICRO_BATCHING_MAX_BATCH);
+        return batch != null ? batch : MICRO_BATCHING_MAX_BATCH_DEFAULT;
+    }
+
+    public static int microBatchingMaxDelay(){
+        Integer delay = ConfigManager.getInteger(MICRO_BATCHING_MAX_DELAY);
+        return delay != null ? delay : MICRO_BATCHING_MAX_DELAY_DEFAULT;
+    }
+
+    public static int maxInFlight(){
+        Integer max = ConfigManager.getInteger(MAX_IN_FLIGHT);
+        return max != null ? max : MAX_IN_FLIGHT_DEFAULT;
+    }
+
+    public static int timerShards(){
+        Integer shards = ConfigManager.getInteger(TIMER_SHARDS);
+        return shards != null ? shards : TIMER_SHARDS_DEFAULT;
+    }
+
+    public static int timerTickMillis(){
+        Integer tick = ConfigManager.getInteger(TIMER_TICK);
+        return tick != null ? tick : TIMER_TICK_DEFAULT;
+    }
+
+    public static String syncWaitStrategy(){
+        String strategy = ConfigManager.get(SYNC_WAIT_STRATEGY);
+        return strategy != null ? strategy : SYNC_WAIT_STRATEGY_DEFAULT;
+    }
+
+    public static int syncWaitSpins(){
+        Integer spins = ConfigManager.getInteger(SYNC_WAIT_SPINS);
+        return spins != null ? spins : SYNC_WAIT_SPINS_DEFAULT;
+    }
+
+    public static int syncWaitYields(){
+        Integer yields = ConfigManager.getInteger(SYNC_WAIT_YIELDS);
+        return yields != null ? yields : SYNC_WAIT_YIELDS_DEFAULT;
+    }
+
+    public static boolean virtualThreadExecutor(){
+        Boolean enable = ConfigManager.getBoolean(VIRTUAL_THREAD_EXECUTOR);
+        return enable != null ? enable : VIRTUAL_THREAD_EXECUTOR_DEFAULT;
+    }
+
+    public static String backpressureMode(){
+        String mode = ConfigManager.get(BACKPRESSURE_MODE);
+        return mode != null ? mode : BACKPRESSURE_MODE_DEFAULT;
+    }
+
+    public static int backpressureQueueSize(){
+        Integer size = ConfigManager.getInteger(BACKPRESSURE_QUEUE_SIZE);
+        return size != null ? size : BACKPRESSURE_QUEUE_SIZE_DEFAULT;
+    }
+
+    public static int maxPendingBytes(){
+        Integer bytes = ConfigManager.getInteger(MAX_PENDING_BYTES);
+        return bytes != null ? bytes : MAX_PENDING_BYTES_DEFAULT;
+    }
+
+    public static boolean serverReadThrottle(){
+        Boolean enable = ConfigManager.getBoolean(SERVER_READ_THROTTLE);
+        return enable != null ? enable : SERVER_READ_THROTTLE_DEFAULT;
+    }
+
+    public static int serverConnectionPendingHigh(){
+        Integer high = ConfigManager.getInteger(SERVER_CONNECTION_PENDING_HIGH);
+        return high != null ? high : SERVER_CONNECTION_PENDING_HIGH_DEFAULT;
+    }
+
+    public static int serverConnectionPendingLow(){
+        Integer low = ConfigManager.getInteger(SERVER_CONNECTION_PENDING_LOW);
+        return low != null ? low : SERVER_CONNECTION_PENDING_LOW_DEFAULT;
+    }
+
+    public static int serverGlobalPendingHigh(){
+        Integer high = ConfigManager.getInteger(SERVER_GLOBAL_PENDING_HIGH);
+        return high != null ? high : SERVER_GLOBAL_PENDING_HIGH_DEFAULT;
+    }
+
+    public static int serverGlobalPendingLow(){
+        Integer low = ConfigManager.getInteger(SERVER_GLOBAL_PENDING_LOW);
+        return low != null ? low : SERVER_GLOBAL_PENDING_LOW_DEFAULT;
+    }
+
+    public static String serverConcurrencyLimit(){
+        String algorithm = ConfigManager.get(SERVER_CONCURRENCY_LIMIT);
+        return algorithm != null ? algorithm : SERVER_CONCURRENCY_LIMIT_DEFAULT;
+    }
+
+    public static int serverConcurrencyLimitInitial(){
+        Integer limit = ConfigManager.getInteger(SERVER_CONCURRENCY_LIMIT_INITIAL);
+        return limit != null ? limit : SERVER_CONCURRENCY_LIMIT_INITIAL_DEFAULT;
+    }
+
+    public static int serverConcurrencyLimitMin(){
+        Integer limit = ConfigManager.getInteger(SERVER_CONCURRENCY_LIMIT_MIN);
+        return limit != null ? limit : SERVER_CONCURRENCY_LIMIT_MIN_DEFAULT;
+    }
+
+    public static int serverConcurrencyLimitMax(){
+        Integer limit = ConfigManager.getInteger(SERVER_CONCURRENCY_LIMIT_MAX);
+        return limit != null ? limit : SERVER_CONCURRENCY_LIMIT_MAX_DEFAULT;
+    }
+
+    public static boolean serverOrderedExecutor(){
+        Boolean enable = ConfigManager.getBoolean(SERVER_ORDERED_EXECUTOR);
+        return enable != null ? enable : SERVER_ORDERED_EXECUTOR_DEFAULT;
+    }
+
+    public static int serverOrderedExecutorParallelism(){
+        Integer parallelism = ConfigManager.getInteger(SERVER_ORDERED_EXECUTOR_PARALLELISM);
+        return parallelism != null ? parallelism : SERVER_ORDERED_EXECUTOR_PARALLELISM_DEFAULT;
+    }
+
+    public static int serverOrderedExecutorLanes(){
+        Integer lanes = ConfigManager.getInteger(SERVER_ORDERED_EXECUTOR_LANES);
+        return lanes != null ? lanes : SERVER_ORDERED_EXECUTOR_LANES_DEFAULT;
+    }
+
+    public static boolean serverDeadlineScheduling(){
+        Boolean enable = ConfigManager.getBoolean(SERVER_DEADLINE_SCHEDULING);
+        return enable != null ? enable : SERVER_DEADLINE_SCHEDULING_DEFAULT;
+    }
+
+    public static int serverDeadlineQueueSize(){
+        Integer size = ConfigManager.getInteger(SERVER_DEADLINE_QUEUE_SIZE);
+        return size != null ? size : SERVER_DEADLINE_QUEUE_SIZE_DEFAULT;
+    }
+
+    public static boolean serverCoDel(){
+        Boolean enable = ConfigManager.getBoolean(SERVER_CODEL);
+        return enable != null ? enable : SERVER_CODEL_DEFAULT;
+    }
+
+    public static String serverCoDelMode(){
+        String mode = ConfigManager.get(SERVER_CODEL_MODE);
+        return mode != null ? mode : SERVER_CODEL_MODE_DEFAULT;
+    }
+
+    public static int serverCoDelTarget(){
+        Integer target = ConfigManager.getInteger(SERVER_CODEL_TARGET);
+        return target != null ? target : SERVER_CODEL_TARGET_DEFAULT;
+    }
+
+    public static int serverCoDelInterval(){
+        Integer interval = ConfigManager.getInteger(SERVER_CODEL_INTERVAL);
+        return interval != null ? interval : SERVER_CODEL_INTERVAL_DEFAULT;
+    }
+
+    public static int serverCoDelQueueSize(){
+        Integer size = ConfigManager.getInteger(SERVER_CODEL_QUEUE_SIZE);
+        return size != null ? size : SERVER_CODEL_QUEUE_SIZE_DEFAULT;
+    }
+
+    public static boolean serverRateLimit(){
+        Boolean enable = ConfigManager.getBoolean(SERVER_RATE_LIMIT);
+        return enable != null ? enable : SERVER_RATE_LIMIT_DEFAULT;
+    }
+
+    public static int serverConnectionRate(){
+        Integer rate = ConfigManager.getInteger(SERVER_CONNECTION_RATE);
+        return rate != null ? rate : SERVER_CONNECTION_RATE_DEFAULT;
+    }
+
+    public static int serverConnectionBurst(){
+        Integer burst = ConfigManager.getInteger(SERVER_CONNECTION_BURST);
+        return burst != null ? burst : SERVER_CONNECTION_BURST_DEFAULT;
+    }
+
+    public static int serverAddressRate(){
+        Integer rate = ConfigManager.getInteger(SERVER_ADDRESS_RATE);
+        return rate != null ? rate : SERVER_ADDRESS_RATE_DEFAULT;
+    }
+
+    public static int serverAddressBurst(){
+        Integer burst = ConfigManager.getInteger(SERVER_ADDRESS_BURST);
+        return burst != null ? burst : SERVER_ADDRESS_BURST_DEFAULT;
+    }
+
+    public static boolean serverFairQueuing(){
+        Boolean enable = ConfigManager.getBoolean(SERVER_FAIR_QUEUING);
+        return enable != null ? enable : SERVER_FAIR_QUEUING_DEFAULT;
+    }
+
+    public static int serverFairQuantum(){
+        Integer quantum = ConfigManager.getInteger(SERVER_FAIR_QUANTUM);
+        return quantum != null ? quantum : SERVER_FAIR_QUANTUM_DEFAULT;
+    }
+
+    public static int serverFairQueueSize(){
+        Integer size = ConfigManager.getInteger(SERVER_FAIR_QUEUE_SIZE);
+        return size != null ? size : SERVER_FAIR_QUEUE_SIZE_DEFAULT;
+    }
+
     public static void setEnableSsl(boolean enable){
         ConfigManager.set(ENABLE_SSL, Boolean.toString(enable));
     }
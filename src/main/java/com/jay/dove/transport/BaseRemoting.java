@@ -3,17 +3,24 @@ package com.jay.dove.transport;
 import com.jay.dove.transport.callback.DefaultInvokeFuture;
 import com.jay.dove.transport.callback.InvokeCallback;
 import com.jay.dove.transport.callback.InvokeFuture;
+import com.jay.dove.transport.callback.WaitStrategy;
+import com.jay.dove.transport.command.CommandBatch;
 import com.jay.dove.transport.command.CommandFactory;
 import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.transport.connection.Backpressure;
 import com.jay.dove.transport.connection.Connection;
 import com.jay.dove.util.TimerHolder;
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timeout;
 import io.netty.util.TimerTask;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,10 +36,19 @@ public class BaseRemoting implements Remoting{
 
     private final CommandFactory commandFactory;
 
+    /**
+     * how sendSync waits for response
+     */
+    private volatile WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
     public BaseRemoting(CommandFactory commandFactory) {
         this.commandFactory = commandFactory;
     }
 
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
     @Override
     public void sendOneway(Connection connection, RemotingCommand command) {
         // check if command already timeout, client fail-fast
@@ -41,13 +57,19 @@ public class BaseRemoting implements Remoting{
             log.warn("oneway request timeout before sending, {}", command);
             return;
         }
-        // get channel from connection
-        Channel channel = connection.getChannel();
-        // send
-        channel.writeAndFlush(command).addListener((ChannelFutureListener)future->{
-            if(!future.isSuccess()){
-                log.warn("oneway request failed, command: {}, connection: {}", command, connection);
-            }
+        // send when channel is writable
+        connection.getBackpressure().submit(false, timeout, ()->{
+            connection.write(command).addListener((ChannelFutureListener)future->{
+                if(!future.isSuccess()){
+                    log.warn("oneway request failed, command: {}, connection: {}", command, connection);
+                }
+            });
+        }, ()->{
+            command.releasePayload();
+            log.warn("oneway request dropped by backpressure, command: {}, connection: {}", command, connection);
+        }, ()->{
+            command.releasePayload();
+            log.warn("oneway request timeout before sending, command: {}, connection: {}", command, connection);
         });
     }
 
@@ -55,12 +77,11 @@ public class BaseRemoting implements Remoting{
     public RemotingCommand sendSync(Connection connection, RemotingCommand command, InvokeCallback callback) throws InterruptedException {
         InvokeFuture future = sendFuture(connection, command, callback);
         // await response sync
-        return future.awaitResponse();
+        return waitStrategy.await(future);
     }
 
     @Override
     public InvokeFuture sendFuture(Connection connection, RemotingCommand command, InvokeCallback callback) {
-        int commandId = command.getId();
         // create invoke future
         DefaultInvokeFuture future = new DefaultInvokeFuture(callback);
         // check if command already timeout, client fail-fast
@@ -68,28 +89,177 @@ public class BaseRemoting implements Remoting{
         if(System.currentTimeMillis() >= timeout){
             throw new RuntimeException("request timeout before sending, command: " + command);
         }
-        // submit a new timeout task
+        submit(connection, command, future, callback);
+        return future;
+    }
+
+    @Override
+    public CompletionStage<RemotingCommand> sendAsync(Connection connection, RemotingCommand command) {
+        DefaultInvokeFuture future = new DefaultInvokeFuture(null);
+        // timeout before sending completes the stage with a timeout response
+        submit(connection, command, future, null);
+        return future.toCompletionStage();
+    }
+
+    /**
+     * submit a request to connection's backpressure, it is registered and written when permitted
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     * @param future {@link DefaultInvokeFuture}
+     * @param callback {@link InvokeCallback}
+     */
+    private void submit(Connection connection, RemotingCommand command, DefaultInvokeFuture future, InvokeCallback callback){
+        Backpressure backpressure = connection.getBackpressure();
+        backpressure.submit(true, command.getTimeoutMillis(), ()->{
+            if(register(connection, command, future, callback, System.currentTimeMillis())){
+                write(connection, command);
+            }else{
+                // timeout while waiting, give back the permit
+                backpressure.release();
+            }
+        }, ()-> rejectBusy(command, future), ()-> rejectTimeout(command, future));
+    }
+
+    @Override
+    public List<InvokeFuture> sendBatch(Connection connection, List<RemotingCommand> commands, InvokeCallback callback) {
+        List<InvokeFuture> futures = new ArrayList<>(commands.size());
+        List<RemotingCommand> sending = new ArrayList<>(commands.size());
+        long now = System.currentTimeMillis();
+        for (RemotingCommand command : commands) {
+            DefaultInvokeFuture future = new DefaultInvokeFuture(callback);
+            futures.add(future);
+            // commands timeout before sending fail alone, others in batch are still sent
+            if(registerInvokeFuture(connection, command, future, callback, now)){
+                sending.add(command);
+            }
+        }
+        if(!sending.isEmpty()){
+            writeBatch(connection, sending);
+        }
+        return futures;
+    }
+
+    /**
+     * register future and timeout task of a command before it is written
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     * @param future {@link DefaultInvokeFuture}
+     * @param callback {@link InvokeCallback}
+     * @param now current time millis
+     * @return false if the command already timeout or rejected by backpressure, its future is completed
+     */
+    boolean registerInvokeFuture(Connection connection, RemotingCommand command, DefaultInvokeFuture future, InvokeCallback callback, long now){
+        if(now >= command.getTimeoutMillis()){
+            // completes future with timeout response, no permit needed
+            return register(connection, command, future, callback, now);
+        }
+        if(!connection.getBackpressure().acquire(true, command.getTimeoutMillis())){
+            if(System.currentTimeMillis() >= command.getTimeoutMillis()){
+                rejectTimeout(command, future);
+            }else{
+                rejectBusy(command, future);
+            }
+            return false;
+        }
+        if(!register(connection, command, future, callback, System.currentTimeMillis())){
+            connection.getBackpressure().release();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean register(Connection connection, RemotingCommand command, DefaultInvokeFuture future, InvokeCallback callback, long now){
+        long timeout = command.getTimeoutMillis();
+        if(now >= timeout){
+            rejectTimeout(command, future);
+            return false;
+        }
+        // save future before timeout task, it may fire at once
+        connection.addInvokeFuture(command.getId(), future);
+        scheduleTimeout(connection, command, future, callback, timeout - now);
+        return true;
+    }
+
+    /**
+     * complete the future of a request timeout before sending
+     * @param command {@link RemotingCommand}
+     * @param future {@link DefaultInvokeFuture}
+     */
+    private void rejectTimeout(RemotingCommand command, DefaultInvokeFuture future){
+        command.releasePayload();
+        future.putResponse(commandFactory.createTimeoutResponse(command.getId(), "request timeout before sending"));
+    }
+
+    /**
+     * complete the future of a request rejected by backpressure
+     * @param command {@link RemotingCommand}
+     * @param future {@link DefaultInvokeFuture}
+     */
+    private void rejectBusy(RemotingCommand command, DefaultInvokeFuture future){
+        command.releasePayload();
+        future.putResponse(commandFactory.createExceptionResponse(command.getId(), "connection busy, in-flight or pending bytes limit reached"));
+    }
+
+    /**
+     * schedule a timeout task, it is cancelled when the future completes
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     * @param future {@link InvokeFuture}
+     * @param callback {@link InvokeCallback}
+     * @param delayMillis delay
+     */
+    private void scheduleTimeout(Connection connection, RemotingCommand command, InvokeFuture future, InvokeCallback callback, long delayMillis){
         HashedWheelTimer timer = TimerHolder.getTimer();
-        timer.newTimeout(new TimeoutTask(command, connection, callback), (timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
-        // save invoke future
-        connection.addInvokeFuture(commandId, future);
-        // send request and listen send result
-        connection.getChannel().writeAndFlush(command).addListener((ChannelFutureListener) listener->{
-            if(!listener.isSuccess()){
-                // failed to send
-                log.warn("send failed, command: {}, canceled: {}, done: {}", command, listener.isCancelled(), listener.isDone());
-                // put exception response
-                RemotingCommand response = commandFactory.createExceptionResponse(commandId, "failed to send request to target address");
-                future.putResponse(response);
-                // remove invoke future
-                connection.removeInvokeFuture(commandId);
-                // callback
-                if(callback != null){
-                    callback.onComplete(response);
+        future.setTimeout(timer.newTimeout(new TimeoutTask(command, connection, callback), delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * write registered commands, in one frame if the protocol supports batch.
+     * Futures of commands failed to send are completed with exception responses.
+     * @param connection {@link Connection}
+     * @param sending commands with registered futures
+     */
+    void writeBatch(Connection connection, List<RemotingCommand> sending){
+        if(sending.size() > 1 && connection.isBatchSupported()){
+            connection.write(new CommandBatch(sending)).addListener((ChannelFutureListener) listener->{
+                if(!listener.isSuccess()){
+                    log.warn("send batch failed, size: {}, connection: {}", sending.size(), connection, listener.cause());
+                    for (RemotingCommand command : sending) {
+                        failSending(connection, command);
+                    }
                 }
+            });
+        }else{
+            for (RemotingCommand command : sending) {
+                write(connection, command);
+            }
+        }
+    }
+
+    /**
+     * write a registered command, its future is completed with exception response if failed to send
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     */
+    private void write(Connection connection, RemotingCommand command){
+        connection.write(command).addListener((ChannelFutureListener) listener->{
+            if(!listener.isSuccess()){
+                log.warn("send failed, command: {}", command, listener.cause());
+                failSending(connection, command);
             }
         });
-        return future;
+    }
+
+    /**
+     * complete the future of a command failed to send
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     */
+    void failSending(Connection connection, RemotingCommand command){
+        InvokeFuture future = connection.removeInvokeFuture(command.getId());
+        if(future != null){
+            future.putResponse(commandFactory.createExceptionResponse(command.getId(), "failed to send request to target address"));
+        }
     }
 
     @Override
@@ -121,13 +291,23 @@ public class BaseRemoting implements Remoting{
         public void run(Timeout timeout) {
             // remove timeout future
             InvokeFuture timeoutFuture = connection.removeInvokeFuture(request.getId());
-            if(timeoutFuture != null){
+            if(timeoutFuture == null){
+                return;
+            }
+            Runnable expire = ()->{
                 // put timeout response
                 timeoutFuture.putResponse(commandFactory.createTimeoutResponse(request.getId(), "await response timeout, request id: " + request.getId()));
-                // execute callback using timer thread
                 if(callback != null){
                     callback.onTimeout(request);
                 }
+            };
+            // keep timer thread free of callbacks and dependent stages of async futures,
+            // use callback's executor or connection's event loop
+            Executor executor = callback != null && callback.getExecutor() != null ? callback.getExecutor() : connection.getChannel().eventLoop();
+            try{
+                executor.execute(expire);
+            }catch (RejectedExecutionException e){
+                expire.run();
             }
         }
     }
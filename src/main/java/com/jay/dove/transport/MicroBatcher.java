@@ -0,0 +1,230 @@
+package com.jay.dove.transport;
+
+import com.jay.dove.transport.callback.DefaultInvokeFuture;
+import com.jay.dove.transport.callback.InvokeCallback;
+import com.jay.dove.transport.callback.InvokeFuture;
+import com.jay.dove.transport.command.CommandCode;
+import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.transport.connection.Connection;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.PlatformDependent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *  Client side micro batcher.
+ *  Async requests of the same connection and command code are queued and sent in batches by the connection's event loop,
+ *  each request keeps its own {@link InvokeFuture}. Queues of a connection are removed when it closes.
+ *  The window adapts to traffic: when the last batch had only one request, the next is drained at once,
+ *  when requests were batched, the next drain waits up to max delay for more, or until max batch is reached.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/17 15:20
+ */
+@Slf4j
+public class MicroBatcher {
+    private final BaseRemoting baseRemoting;
+    /**
+     * max requests sent in one batch
+     */
+    private final int maxBatch;
+    /**
+     * max time a request waits for its batch under load
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * batch queues, connection -> command code -> queue
+     */
+    private final ConcurrentHashMap<Connection, ConcurrentHashMap<CommandCode, BatchQueue>> queues = new ConcurrentHashMap<>();
+
+    /**
+     * requests submitted
+     */
+    private final LongAdder requests = new LongAdder();
+    /**
+     * writes of one or more requests
+     */
+    private final LongAdder batches = new LongAdder();
+    /**
+     * requests sent together with others
+     */
+    private final LongAdder batchedRequests = new LongAdder();
+    /**
+     * drains waited for the window
+     */
+    private final LongAdder delayedDrains = new LongAdder();
+
+    public MicroBatcher(BaseRemoting baseRemoting, int maxBatch, long maxDelayMicros) {
+        if(maxBatch <= 0){
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        this.baseRemoting = baseRemoting;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+    }
+
+    /**
+     * queue an async request
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     * @param callback {@link InvokeCallback}
+     * @return {@link InvokeFuture}
+     */
+    public InvokeFuture submit(Connection connection, RemotingCommand command, InvokeCallback callback){
+        requests.increment();
+        DefaultInvokeFuture future = new DefaultInvokeFuture(callback);
+        // register before queueing, response may arrive as soon as the batch is written
+        if(!baseRemoting.registerInvokeFuture(connection, command, future, callback, System.currentTimeMillis())){
+            return future;
+        }
+        getQueue(connection, command.getCommandCode()).offer(command);
+        return future;
+    }
+
+    private BatchQueue getQueue(Connection connection, CommandCode code){
+        ConcurrentHashMap<CommandCode, BatchQueue> codeQueues = queues.get(connection);
+        if(codeQueues == null){
+            codeQueues = queues.computeIfAbsent(connection, k -> {
+                // fires at once if channel is already closed
+                connection.getChannel().closeFuture().addListener((ChannelFutureListener) future -> remove(connection));
+                return new ConcurrentHashMap<>();
+            });
+        }
+        BatchQueue queue = codeQueues.get(code);
+        if(queue == null){
+            queue = codeQueues.computeIfAbsent(code, k -> new BatchQueue(connection));
+        }
+        return queue;
+    }
+
+    /**
+     * remove queues of a closed connection, requests left in them are failed
+     * @param connection {@link Connection}
+     */
+    private void remove(Connection connection){
+        ConcurrentHashMap<CommandCode, BatchQueue> codeQueues = queues.remove(connection);
+        if(codeQueues != null){
+            for(BatchQueue queue : codeQueues.values()){
+                queue.failAll();
+            }
+        }
+    }
+
+    public long requests(){
+        return requests.sum();
+    }
+
+    public long batches(){
+        return batches.sum();
+    }
+
+    public long batchedRequests(){
+        return batchedRequests.sum();
+    }
+
+    public long delayedDrains(){
+        return delayedDrains.sum();
+    }
+
+    public String statistics(){
+        return "MicroBatcher{" +
+                "requests=" + requests() +
+                ", batches=" + batches() +
+                ", batchedRequests=" + batchedRequests() +
+                ", delayedDrains=" + delayedDrains() +
+                '}';
+    }
+
+    /**
+     * queue of one connection and command code, consumed only by the connection's event loop
+     */
+    final class BatchQueue implements Runnable{
+        private final Connection connection;
+        private final EventLoop eventLoop;
+        private final Queue<RemotingCommand> queue = PlatformDependent.newMpscQueue();
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        /**
+         * size of the last drained batch, written by event loop
+         */
+        private volatile int lastBatchSize;
+
+        BatchQueue(Connection connection) {
+            this.connection = connection;
+            this.eventLoop = connection.getChannel().eventLoop();
+        }
+
+        void offer(RemotingCommand command){
+            queue.offer(command);
+            int size = pending.incrementAndGet();
+            try{
+                if(scheduled.compareAndSet(false, true)){
+                    if(maxDelayNanos > 0 && lastBatchSize > 1 && size < maxBatch){
+                        // under load, wait for more requests within window
+                        delayedDrains.increment();
+                        eventLoop.schedule(this, maxDelayNanos, TimeUnit.NANOSECONDS);
+                    }else{
+                        eventLoop.execute(this);
+                    }
+                }else if(size == maxBatch && maxDelayNanos > 0){
+                    // batch full, don't wait for the delayed drain
+                    eventLoop.execute(this);
+                }
+            }catch (RejectedExecutionException e){
+                // event loop shut down
+                failAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            scheduled.set(false);
+            List<RemotingCommand> batch = new ArrayList<>(Math.min(pending.get(), maxBatch));
+            RemotingCommand command;
+            while(batch.size() < maxBatch && (command = queue.poll()) != null){
+                batch.add(command);
+            }
+            int drained = batch.size();
+            if(drained > 0){
+                pending.addAndGet(-drained);
+                write(batch);
+            }
+            lastBatchSize = drained;
+            // more requests than one batch, drain again after other tasks
+            if(!queue.isEmpty() && scheduled.compareAndSet(false, true)){
+                eventLoop.execute(this);
+            }
+        }
+
+        private void write(List<RemotingCommand> batch){
+            batches.increment();
+            if(batch.size() > 1){
+                batchedRequests.add(batch.size());
+            }
+            baseRemoting.writeBatch(connection, batch);
+        }
+
+        private void failAll(){
+            RemotingCommand command;
+            while((command = queue.poll()) != null){
+                pending.decrementAndGet();
+                log.warn("micro batch request not sent, connection closed or event loop shut down, command: {}", command);
+                baseRemoting.failSending(connection, command);
+                command.releasePayload();
+            }
+        }
+    }
+}
@@ -5,6 +5,9 @@ import com.jay.dove.transport.callback.InvokeFuture;
 import com.jay.dove.transport.command.RemotingCommand;
 import com.jay.dove.transport.connection.Connection;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 /**
  * <p>
  *  This interface provides 4 basic remoting methods.
@@ -12,6 +15,7 @@ import com.jay.dove.transport.connection.Connection;
  *  Sync: sync request, block sender thread until response received.
  *  Future Async: async request, this will return a future.
  *  Callback Async: async with callback. Callback method will be called after receiving response.
+ *  Batch: multiple requests sent in one frame, each with its own future.
  * </p>
  *
  * @author Jay
@@ -52,5 +56,25 @@ public interface Remoting {
      */
     void sendAsync(Connection connection, RemotingCommand command, InvokeCallback callback);
 
+    /**
+     * send an async command, the returned stage completes with the response.
+     * Timeout and failures complete it with timeout or exception responses
+     * @param connection {@link Connection}
+     * @param command {@link RemotingCommand}
+     * @return {@link CompletionStage}
+     */
+    CompletionStage<RemotingCommand> sendAsync(Connection connection, RemotingCommand command);
+
+    /**
+     * send multiple commands in one frame, each command has its own response.
+     * Backpressure is applied per command, commands without a permit get exception responses at once,
+     * except in {@link com.jay.dove.transport.connection.Backpressure.Mode#BLOCK} mode, where the caller waits
+     * @param connection {@link Connection}
+     * @param commands {@link RemotingCommand}s
+     * @param callback {@link InvokeCallback} callback of every command
+     * @return {@link InvokeFuture}s in the order of commands
+     */
+    List<InvokeFuture> sendBatch(Connection connection, List<RemotingCommand> commands, InvokeCallback callback);
+
 
 }
@@ -2,14 +2,24 @@ package com.jay.dove.transport.callback;
 
 import com.jay.dove.transport.command.RemotingCommand;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
+import io.netty.util.Timeout;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
 
 /**
  * <p>
- *  Default Invoke Future
+ *  Default Invoke Future.
+ *  It is backed by a private {@link CompletableFuture}, no latch is allocated unless a thread blocks on it,
+ *  and only the response path can complete it.
+ *  {@link #toCompletionStage()} exposes it as a {@link CompletionStage} created once on demand.
+ *  Responses are never completed exceptionally, errors are exception or timeout responses.
  * </p>
  *
  * @author Jay
@@ -17,43 +27,93 @@ import java.util.concurrent.TimeoutException;
  */
 public class DefaultInvokeFuture implements InvokeFuture{
 
-    private RemotingCommand response;
-
-    private final CountDownLatch countDownLatch = new CountDownLatch(1);
+    private final CompletableFuture<RemotingCommand> future = new CompletableFuture<>();
 
     private final InvokeCallback callback;
 
+    /**
+     * dependent stage returned by {@link #toCompletionStage()}, created on first call
+     */
+    private volatile CompletionStage<RemotingCommand> stage;
+    private static final AtomicReferenceFieldUpdater<DefaultInvokeFuture, CompletionStage> STAGE = AtomicReferenceFieldUpdater.newUpdater(DefaultInvokeFuture.class, CompletionStage.class, "stage");
+
+    /**
+     * timeout task, cancelled on completion
+     */
+    private volatile Timeout timeout;
+
+    private volatile int callbackExecuted;
+    private static final AtomicIntegerFieldUpdater<DefaultInvokeFuture> CALLBACK_EXECUTED = AtomicIntegerFieldUpdater.newUpdater(DefaultInvokeFuture.class, "callbackExecuted");
+
     public DefaultInvokeFuture(InvokeCallback callback) {
         this.callback = callback;
     }
 
     @Override
     public RemotingCommand awaitResponse() throws InterruptedException {
-        countDownLatch.await();
-        return response;
+        try{
+            return future.get();
+        }catch (ExecutionException e){
+            throw new IllegalStateException(e.getCause());
+        }
     }
 
     @Override
     public RemotingCommand awaitResponse(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
-        if(!countDownLatch.await(timeout, timeUnit)){
-            throw new TimeoutException("future timeout");
+        try{
+            return future.get(timeout, timeUnit);
+        }catch (ExecutionException e){
+            throw new IllegalStateException(e.getCause());
         }
-        return response;
     }
 
     @Override
     public void putResponse(RemotingCommand response) {
-        // response必须在countDown之前赋值
-        this.response = response;
-        countDownLatch.countDown();
+        // only the first response completes this future and runs callback
+        if(!future.complete(response)){
+            response.releasePayload();
+            return;
+        }
+        // response arrived, the timeout task is no longer needed
+        Timeout timeout = this.timeout;
+        if(timeout != null){
+            timeout.cancel();
+        }
         // callback
         this.executeCallback();
     }
 
+    @Override
+    public void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+        // completed before timeout was set
+        if(isDone()){
+            timeout.cancel();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletionStage<RemotingCommand> toCompletionStage() {
+        CompletionStage<RemotingCommand> stage = this.stage;
+        if(stage == null){
+            // a dependent stage, callers can't complete or cancel this future through it
+            STAGE.compareAndSet(this, null, future.thenApply(Function.identity()));
+            stage = this.stage;
+        }
+        return stage;
+    }
+
+    @Override
+    public boolean isDone() {
+        return future.isDone();
+    }
+
     @Override
     public void executeCallback() {
-        // execute callback methods
-        if(callback != null){
+        // execute callback methods, only once
+        if(callback != null && isDone() && CALLBACK_EXECUTED.compareAndSet(this, 0, 1)){
+            RemotingCommand response = future.getNow(null);
             Runnable callbackTask = ()->{
                 try{
                     callback.onComplete(response);
@@ -2,12 +2,17 @@ package com.jay.dove.transport.callback;
 
 import com.jay.dove.transport.command.RemotingCommand;
 
+import io.netty.util.Timeout;
+
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * <p>
- *
+ *  Future of an invocation.
+ *  The consumer of the response, either the awaiting thread or the callback,
+ *  owns the response's payload and must release it, see {@link RemotingCommand#getPayload()}
  * </p>
  *
  * @author Jay
@@ -29,6 +34,12 @@ public interface InvokeFuture {
      */
     RemotingCommand awaitResponse(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException;
 
+    /**
+     * check if response arrived without blocking
+     * @return boolean
+     */
+    boolean isDone();
+
     /**
      * put response, completes this future
      * @param response {@link RemotingCommand}
@@ -36,7 +47,23 @@ public interface InvokeFuture {
     void putResponse(RemotingCommand response);
 
     /**
-     * async execute callback
+     * async execute callback, called by {@link #putResponse(RemotingCommand)}.
+     * Callback runs at most once
      */
     void executeCallback();
+
+    /**
+     * get a {@link CompletionStage} view of this future, it completes with the response.
+     * Completing or cancelling the view doesn't affect this future
+     * @return {@link CompletionStage}
+     */
+    CompletionStage<RemotingCommand> toCompletionStage();
+
+    /**
+     * set the timeout task of this future, it is cancelled when the future completes
+     * @param timeout {@link Timeout}
+     */
+    default void setTimeout(Timeout timeout){
+
+    }
 }
@@ -0,0 +1,59 @@
+package com.jay.dove.transport.callback;
+
+import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.util.VirtualThreads;
+
+/**
+ * <p>
+ *  Spin, then yield, then park.
+ *  The caller checks the future in a busy loop, then yields its CPU between checks,
+ *  and parks only if the response still hasn't arrived.
+ *  Virtual threads park at once.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/18 14:42
+ */
+public class SpinYieldParkWaitStrategy implements WaitStrategy {
+    public static final String NAME = "spin_yield_park";
+
+    /**
+     * busy-spin checks before yielding
+     */
+    private final int spins;
+    /**
+     * yield checks before parking
+     */
+    private final int yields;
+
+    public SpinYieldParkWaitStrategy(int spins, int yields) {
+        if(spins < 0 || yields < 0){
+            throw new IllegalArgumentException("spins and yields can't be negative");
+        }
+        this.spins = spins;
+        this.yields = yields;
+    }
+
+    @Override
+    public RemotingCommand await(InvokeFuture future) throws InterruptedException {
+        if(VirtualThreads.isVirtual(Thread.currentThread())){
+            // parking a virtual thread is cheap, spinning holds its carrier thread
+            return future.awaitResponse();
+        }
+        for(int i = 0; i < spins; i++){
+            if(future.isDone()){
+                return future.awaitResponse();
+            }
+        }
+        for(int i = 0; i < yields; i++){
+            if(future.isDone()){
+                return future.awaitResponse();
+            }
+            Thread.yield();
+        }
+        if(Thread.interrupted()){
+            throw new InterruptedException();
+        }
+        return future.awaitResponse();
+    }
+}
@@ -0,0 +1,42 @@
+package com.jay.dove.transport.callback;
+
+import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.transport.command.RemotingCommand;
+
+/**
+ * <p>
+ *  Wait strategy of synchronous calls.
+ *  {@link #BLOCKING} parks the caller at once,
+ *  {@link SpinYieldParkWaitStrategy} busy-spins and yields before parking,
+ *  trading CPU for latency when responses arrive within microseconds.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/18 14:30
+ */
+public interface WaitStrategy {
+    /**
+     * park until response arrives
+     */
+    WaitStrategy BLOCKING = InvokeFuture::awaitResponse;
+
+    /**
+     * wait for the response of future
+     * @param future {@link InvokeFuture}
+     * @return {@link RemotingCommand}
+     * @throws InterruptedException interrupted while waiting
+     */
+    RemotingCommand await(InvokeFuture future) throws InterruptedException;
+
+    /**
+     * create the wait strategy configured by {@link DoveConfigs#SYNC_WAIT_STRATEGY}
+     * @return {@link WaitStrategy}
+     */
+    static WaitStrategy fromConfig(){
+        String strategy = DoveConfigs.syncWaitStrategy();
+        if(SpinYieldParkWaitStrategy.NAME.equalsIgnoreCase(strategy)){
+            return new SpinYieldParkWaitStrategy(DoveConfigs.syncWaitSpins(), DoveConfigs.syncWaitYields());
+        }
+        return BLOCKING;
+    }
+}
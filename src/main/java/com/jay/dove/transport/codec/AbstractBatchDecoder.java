@@ -1,8 +1,10 @@
 package com.jay.dove.transport.codec;
 
 import com.jay.dove.exception.DecoderException;
+import com.jay.dove.transport.command.RemotingCommand;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.internal.RecyclableArrayList;
@@ -25,7 +27,40 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
      */
     private ByteBuf accumulation;
 
-    private static final Accumulator MERGE_ACCUMULATOR = ((allocator, in, original) -> {
+    /**
+     * accumulator used to merge input bytes into accumulation
+     */
+    private Accumulator accumulator = MERGE_ACCUMULATOR;
+
+    /**
+     * discard read bytes of accumulation after this many channelRead calls
+     */
+    private int discardAfterReads = DEFAULT_DISCARD_AFTER_READS;
+
+    /**
+     * channelRead calls since last discard
+     */
+    private int numReads;
+
+    /**
+     * readable bytes required before decode is called again.
+     * Set by {@link #expectFrame(int)} when a frame is incomplete.
+     */
+    private int expectedBytes;
+
+    public static final int DEFAULT_DISCARD_AFTER_READS = 16;
+
+    /**
+     * max components held by a composite accumulation before consolidation.
+     * Consolidation copies the whole backlog, so it is kept far above the segments of one large frame
+     */
+    public static final int DEFAULT_MAX_COMPONENTS = 1024;
+
+    /**
+     * Copies input bytes into one continuous buffer.
+     * Works best with small frames.
+     */
+    public static final Accumulator MERGE_ACCUMULATOR = ((allocator, in, original) -> {
         ByteBuf buffer;
         if(original.writableBytes() < in.readableBytes()){
             // expand buffer to new size
@@ -39,6 +74,73 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
         return buffer;
     });
 
+    /**
+     * Chains input buffers into a {@link CompositeByteBuf} without copying.
+     * Works best with large frames arriving in many segments.
+     */
+    public static final Accumulator COMPOSITE_ACCUMULATOR = compositeAccumulator(DEFAULT_MAX_COMPONENTS);
+
+    /**
+     * create a composite accumulator.
+     * The composite consolidates its components into one buffer when it holds more than maxComponents,
+     * which keeps the component array and index lookups bounded.
+     * @param maxComponents max components before consolidation
+     * @return {@link Accumulator}
+     */
+    public static Accumulator compositeAccumulator(int maxComponents){
+        if(maxComponents < 2){
+            throw new IllegalArgumentException("maxComponents must be at least 2");
+        }
+        return (allocator, in, original) -> {
+            if(!original.isReadable()){
+                // nothing left in accumulation, use input directly
+                original.release();
+                return in;
+            }
+            CompositeByteBuf composite;
+            if(original instanceof CompositeByteBuf && original.refCnt() == 1){
+                composite = (CompositeByteBuf) original;
+                // drop decoded components, only unread segments count towards consolidation
+                composite.discardReadComponents();
+            }else{
+                composite = allocator.compositeBuffer(maxComponents);
+                composite.addComponent(true, original);
+            }
+            composite.addComponent(true, in);
+            return composite;
+        };
+    }
+
+    public AbstractBatchDecoder() {
+
+    }
+
+    public AbstractBatchDecoder(Accumulator accumulator) {
+        setAccumulator(accumulator);
+    }
+
+    /**
+     * set the accumulator of this decoder
+     * @param accumulator {@link Accumulator}
+     */
+    public void setAccumulator(Accumulator accumulator) {
+        if(accumulator == null){
+            throw new NullPointerException("accumulator");
+        }
+        this.accumulator = accumulator;
+    }
+
+    /**
+     * set how many channelRead calls to wait before discarding read bytes
+     * @param discardAfterReads channelRead count
+     */
+    public void setDiscardAfterReads(int discardAfterReads) {
+        if(discardAfterReads <= 0){
+            throw new IllegalArgumentException("discardAfterReads must be positive");
+        }
+        this.discardAfterReads = discardAfterReads;
+    }
+
     /**
      * read from channel
      * do batch decode here
@@ -55,9 +157,16 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
                 if(accumulation == null){
                     accumulation = data;
                 }else{
-                    accumulation = MERGE_ACCUMULATOR.accumulate(ctx.alloc(), data, accumulation);
+                    accumulation = accumulator.accumulate(ctx.alloc(), data, accumulation);
+                }
+                // skip decoding until the expected frame is complete
+                if(accumulation.readableBytes() >= expectedBytes){
+                    decodeBatch(ctx, accumulation, out);
+                    // pre-size accumulation for the incomplete frame
+                    if(expectedBytes > accumulation.readableBytes()){
+                        ensureAccumulationCapacity(ctx.alloc());
+                    }
                 }
-                decodeBatch(ctx, accumulation, out);
             }catch (DecoderException e){
                 throw e;
             }catch (Throwable e){
@@ -65,11 +174,19 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
             }finally {
                 // release empty accumulation
                 if(accumulation != null && !accumulation.isReadable()){
+                    numReads = 0;
                     accumulation.release();
                     accumulation = null;
+                }else if(++numReads >= discardAfterReads){
+                    // discard read bytes, prevents long-lived connections holding memory
+                    numReads = 0;
+                    discardSomeReadBytes();
                 }
 
                 int size = out.size();
+                if(size > 0){
+                    stampDecodeTime(out);
+                }
                 if(size == 1){
                     ctx.fireChannelRead(out.get(0));
                 }else if(size > 0){
@@ -82,11 +199,62 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
         }
     }
 
+    /**
+     * set decode time of commands decoded by one read, the start of their queue sojourn
+     * @param out decoded messages
+     */
+    private static void stampDecodeTime(List<Object> out){
+        long now = System.nanoTime();
+        for (Object o : out) {
+            if(o instanceof RemotingCommand){
+                ((RemotingCommand) o).setDecodeNanos(now);
+            }
+        }
+    }
+
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        numReads = 0;
+        discardSomeReadBytes();
         super.channelReadComplete(ctx);
     }
 
+    /**
+     * Report that the frame at reader index is incomplete and needs frameLength readable bytes.
+     * Call this in {@link #decode(ChannelHandlerContext, ByteBuf, List)} without reading any bytes,
+     * decode won't be called again until frameLength bytes are accumulated.
+     * @param frameLength total length of the incomplete frame
+     */
+    protected void expectFrame(int frameLength){
+        this.expectedBytes = frameLength;
+    }
+
+    /**
+     * expand merged accumulation to hold the whole expected frame,
+     * composite accumulation doesn't need expanding.
+     * @param allocator {@link ByteBufAllocator}
+     */
+    private void ensureAccumulationCapacity(ByteBufAllocator allocator){
+        if(accumulation instanceof CompositeByteBuf || accumulator != MERGE_ACCUMULATOR){
+            return;
+        }
+        int readable = accumulation.readableBytes();
+        if(accumulation.capacity() - accumulation.readerIndex() < expectedBytes){
+            accumulation = expandByteBuf(allocator, accumulation, expectedBytes - readable);
+        }
+    }
+
+    /**
+     * discard read bytes of accumulation.
+     * Composite accumulation releases the components that are fully read.
+     */
+    private void discardSomeReadBytes(){
+        // shared accumulation may be referenced by derived buffers, leave it alone
+        if(accumulation != null && accumulation.refCnt() == 1){
+            accumulation.discardSomeReadBytes();
+        }
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         RecyclableArrayList out = RecyclableArrayList.newInstance();
@@ -102,6 +270,7 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
         }finally {
             if(accumulation != null){
                 accumulation.release();
+                accumulation = null;
             }
             int size = out.size();
             for (Object o : out) {
@@ -129,6 +298,8 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
                 // original size of List and readable bytes before decode
                 int originalSize = out.size();
                 int originalReaderIndex = in.readerIndex();
+                // expectation only holds for the frame it was reported on
+                expectedBytes = 0;
 
                 // decode once
                 decode(ctx, in, out);
@@ -166,7 +337,7 @@ public abstract class AbstractBatchDecoder extends ChannelInboundHandlerAdapter
      */
     public abstract void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception;
 
-    interface Accumulator {
+    public interface Accumulator {
         /**
          * accumulate bytes from input to accumulation
          * @param allocator allocator
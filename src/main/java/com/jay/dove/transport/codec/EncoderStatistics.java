@@ -0,0 +1,76 @@
+package com.jay.dove.transport.codec;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *  Output buffer allocation statistics of {@link ProtocolCodeBasedEncoder}.
+ *  Shows how often protocol encoders' size hints miss the actual encoded size.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/15 10:12
+ */
+public class EncoderStatistics {
+    /**
+     * buffers allocated with a size hint
+     */
+    private static final LongAdder HINTED = new LongAdder();
+    /**
+     * buffers allocated with default size, protocol encoder gave no hint
+     */
+    private static final LongAdder UNHINTED = new LongAdder();
+    /**
+     * encoded size larger than hint, buffer expanded while encoding
+     */
+    private static final LongAdder UNDERESTIMATED = new LongAdder();
+    /**
+     * encoded size smaller than hint, allocated bytes wasted
+     */
+    private static final LongAdder OVERESTIMATED = new LongAdder();
+
+    static void recordHinted(int hint, int actual){
+        HINTED.increment();
+        if(actual > hint){
+            UNDERESTIMATED.increment();
+        }else if(actual < hint){
+            OVERESTIMATED.increment();
+        }
+    }
+
+    static void recordUnhinted(){
+        UNHINTED.increment();
+    }
+
+    public static long hinted(){
+        return HINTED.sum();
+    }
+
+    public static long unhinted(){
+        return UNHINTED.sum();
+    }
+
+    public static long underestimated(){
+        return UNDERESTIMATED.sum();
+    }
+
+    public static long overestimated(){
+        return OVERESTIMATED.sum();
+    }
+
+    public static void reset(){
+        HINTED.reset();
+        UNHINTED.reset();
+        UNDERESTIMATED.reset();
+        OVERESTIMATED.reset();
+    }
+
+    public static String snapshot(){
+        return "EncoderStatistics{" +
+                "hinted=" + hinted() +
+                ", unhinted=" + unhinted() +
+                ", underestimated=" + underestimated() +
+                ", overestimated=" + overestimated() +
+                '}';
+    }
+}
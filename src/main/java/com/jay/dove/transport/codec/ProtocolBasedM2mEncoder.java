@@ -1,13 +1,11 @@
 package com.jay.dove.transport.codec;
 
-import com.jay.dove.transport.connection.Connection;
+import com.jay.dove.transport.command.CommandBatch;
+import com.jay.dove.transport.command.RemotingCommand;
 import com.jay.dove.transport.protocol.Protocol;
 import com.jay.dove.transport.protocol.ProtocolCode;
-import com.jay.dove.transport.protocol.ProtocolManager;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToMessageEncoder;
-import io.netty.util.Attribute;
 
 import java.util.List;
 
@@ -23,26 +21,30 @@ public class ProtocolBasedM2mEncoder extends MessageToMessageEncoder<Object> {
 
     private final ProtocolCode defaultProtocolCode;
 
+    /**
+     * protocol of this channel, resolved on first encode
+     */
+    private Protocol protocol;
+
     public ProtocolBasedM2mEncoder(ProtocolCode defaultProtocolCode) {
         this.defaultProtocolCode = defaultProtocolCode;
     }
 
     @Override
     protected void encode(ChannelHandlerContext context, Object o, List<Object> out) throws Exception {
-        ProtocolCode protocolCode;
-        // get protocol code from channel
-        Attribute<ProtocolCode> attr = context.channel().attr(Connection.PROTOCOL);
-        if(attr != null){
-            protocolCode = attr.get();
-        }else{
-            // no protocol code found, use default protocol
-            protocolCode = defaultProtocolCode;
-        }
-        // get the protocol instance
-        Protocol protocol = ProtocolManager.getProtocol(protocolCode);
+        Protocol protocol = this.protocol;
         if(protocol == null){
-            throw new EncoderException("unknown protocol, please register protocol to ProtocolManager");
+            protocol = this.protocol = ProtocolCodeBasedEncoder.resolveProtocol(context, defaultProtocolCode);
+        }
+        try{
+            protocol.getM2mEncoder().encode(context, o, out);
+        }finally {
+            // outbound payload is consumed by encoder, M2m encoders retain the parts they output
+            if(o instanceof RemotingCommand){
+                ((RemotingCommand) o).releasePayload();
+            }else if(o instanceof CommandBatch){
+                ((CommandBatch) o).releasePayloads();
+            }
         }
-        protocol.getM2mEncoder().encode(context, o, out);
     }
 }
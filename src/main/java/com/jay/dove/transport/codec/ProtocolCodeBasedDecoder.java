@@ -1,9 +1,9 @@
 package com.jay.dove.transport.codec;
 
-import com.jay.dove.exception.DecoderException;
 import com.jay.dove.transport.connection.Connection;
 import com.jay.dove.transport.protocol.Protocol;
 import com.jay.dove.transport.protocol.ProtocolCode;
+import com.jay.dove.transport.protocol.ProtocolDecoder;
 import com.jay.dove.transport.protocol.ProtocolManager;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -11,7 +11,6 @@ import io.netty.util.Attribute;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -29,15 +28,33 @@ public class ProtocolCodeBasedDecoder extends AbstractBatchDecoder{
      */
     public static final int DEFAULT_PROTOCOL_CODE_LENGTH = 1;
     private final ProtocolCode rpcCode = ProtocolCode.fromValue((byte)22);
+
+    /**
+     * protocol resolved from the last frame, frames of one channel usually share the same protocol
+     */
+    private Protocol protocol;
+
+    public ProtocolCodeBasedDecoder() {
+
+    }
+
+    /**
+     * create a decoder with a custom accumulator.
+     * Codecs of large-frame protocols can use {@link AbstractBatchDecoder#COMPOSITE_ACCUMULATOR}
+     * @param accumulator {@link Accumulator}
+     */
+    public ProtocolCodeBasedDecoder(Accumulator accumulator) {
+        super(accumulator);
+    }
     /**
-     * decode the protocol code from input.
+     * decode the protocol code from input without moving reader index.
      * {@link #decode} will use this code to locate protocol decoder
      * @param in input
      * @return {@link ProtocolCode}
      */
     protected ProtocolCode decodeProtocolCode(ByteBuf in){
-        if(in.readableBytes() > DEFAULT_PROTOCOL_CODE_LENGTH) {
-            byte code = in.readByte();
+        if(in.readableBytes() >= DEFAULT_PROTOCOL_CODE_LENGTH) {
+            byte code = in.getByte(in.readerIndex());
             return ProtocolCode.fromValue(code);
         }
         return null;
@@ -45,27 +62,43 @@ public class ProtocolCodeBasedDecoder extends AbstractBatchDecoder{
 
     @Override
     public void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        Protocol protocol = null;
-        ProtocolCode protocolCode = null;
-        in.markReaderIndex();
-        try{
-            protocolCode = decodeProtocolCode(in);
-            if(protocolCode == null){
+        ProtocolCode protocolCode = decodeProtocolCode(in);
+        if(protocolCode == null){
+            return;
+        }
+        Protocol protocol = this.protocol;
+        if(protocol == null || protocol.getCode() != protocolCode){
+            protocol = resolveProtocol(ctx, protocolCode);
+        }
+        if(protocol != null){
+            ProtocolDecoder decoder = protocol.getDecoder();
+            // wait for the whole frame if its length is known
+            int frameLength = decoder.frameLength(in);
+            if(frameLength > in.readableBytes()){
+                expectFrame(frameLength);
                 return;
             }
-            protocol = ProtocolManager.getProtocol(protocolCode);
-        }finally {
-            in.resetReaderIndex();
+            decoder.decode(ctx, in, out);
+        }else{
+            log.error("unregistered protocol: {}", protocolCode.value());
         }
+    }
 
+    /**
+     * find the protocol and bind its code to channel
+     * @param ctx {@link ChannelHandlerContext}
+     * @param protocolCode {@link ProtocolCode}
+     * @return {@link Protocol}, null if not registered
+     */
+    private Protocol resolveProtocol(ChannelHandlerContext ctx, ProtocolCode protocolCode){
+        Protocol protocol = ProtocolManager.getProtocol(protocolCode);
         if(protocol != null){
             Attribute<ProtocolCode> attr = ctx.channel().attr(Connection.PROTOCOL);
             if(attr.get() == null){
                 attr.set(protocolCode);
             }
-            protocol.getDecoder().decode(ctx, in, out);
-        }else{
-            log.error("unregistered protocol: {}", protocolCode.value());
+            this.protocol = protocol;
         }
+        return protocol;
     }
 }
@@ -1,5 +1,7 @@
 package com.jay.dove.transport.codec;
 
+import com.jay.dove.transport.command.CommandBatch;
+import com.jay.dove.transport.command.RemotingCommand;
 import com.jay.dove.transport.connection.Connection;
 import com.jay.dove.transport.protocol.Protocol;
 import com.jay.dove.transport.protocol.ProtocolCode;
@@ -9,7 +11,6 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.util.Attribute;
-import io.netty.util.AttributeKey;
 
 /**
  * <p>
@@ -26,18 +27,74 @@ public class ProtocolCodeBasedEncoder extends MessageToByteEncoder<Object> {
      */
     private final ProtocolCode defaultProtocolCode;
 
+    /**
+     * protocol of this channel, resolved on first encode
+     */
+    private Protocol protocol;
+
+    /**
+     * size hint of the buffer being encoded, -1 if no hint
+     */
+    private int sizeHint = -1;
+
     public ProtocolCodeBasedEncoder(ProtocolCode defaultProtocolCode) {
         this.defaultProtocolCode = defaultProtocolCode;
     }
 
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext context, Object o, boolean preferDirect) throws Exception {
+        int hint = getProtocol(context).getEncoder().encodedSize(o);
+        this.sizeHint = hint;
+        if(hint < 0){
+            EncoderStatistics.recordUnhinted();
+            return super.allocateBuffer(context, o, preferDirect);
+        }
+        // protocol code + encoded size
+        int capacity = ProtocolCodeBasedDecoder.DEFAULT_PROTOCOL_CODE_LENGTH + hint;
+        return preferDirect ? context.alloc().ioBuffer(capacity) : context.alloc().heapBuffer(capacity);
+    }
+
     @Override
     public void encode(ChannelHandlerContext context, Object o, ByteBuf byteBuf) throws Exception {
-        ProtocolCode protocolCode;
+        Protocol protocol = getProtocol(context);
+        int start = byteBuf.writerIndex();
+        byteBuf.writeByte(protocol.getCode().value());
+        try{
+            // call protocol's encoder
+            protocol.getEncoder().encode(context, o, byteBuf);
+        }finally {
+            // outbound payload is consumed by encoder
+            if(o instanceof RemotingCommand){
+                ((RemotingCommand) o).releasePayload();
+            }else if(o instanceof CommandBatch){
+                ((CommandBatch) o).releasePayloads();
+            }
+        }
+        if(sizeHint >= 0){
+            EncoderStatistics.recordHinted(sizeHint, byteBuf.writerIndex() - start - ProtocolCodeBasedDecoder.DEFAULT_PROTOCOL_CODE_LENGTH);
+        }
+    }
+
+    private Protocol getProtocol(ChannelHandlerContext context){
+        Protocol protocol = this.protocol;
+        if(protocol == null){
+            protocol = this.protocol = resolveProtocol(context, defaultProtocolCode);
+        }
+        return protocol;
+    }
+
+    /**
+     * get the protocol of channel, or the default protocol if channel's protocol is absent
+     * @param context {@link ChannelHandlerContext}
+     * @param defaultProtocolCode default {@link ProtocolCode}
+     * @return {@link Protocol}
+     * @throws EncoderException protocol not registered
+     */
+    static Protocol resolveProtocol(ChannelHandlerContext context, ProtocolCode defaultProtocolCode){
         // get protocol code from channel
         Attribute<ProtocolCode> attr = context.channel().attr(Connection.PROTOCOL);
-        if(attr != null){
-            protocolCode = attr.get();
-        }else{
+        ProtocolCode protocolCode = attr.get();
+        if(protocolCode == null){
             // no protocol code found, use default protocol
             protocolCode = defaultProtocolCode;
         }
@@ -46,8 +103,6 @@ public class ProtocolCodeBasedEncoder extends MessageToByteEncoder<Object> {
         if(protocol == null){
             throw new EncoderException("unknown protocol, please register protocol to ProtocolManager");
         }
-        byteBuf.writeByte(protocolCode.value());
-        // call protocol's encoder
-        protocol.getEncoder().encode(context, o, byteBuf);
+        return protocol;
     }
 }
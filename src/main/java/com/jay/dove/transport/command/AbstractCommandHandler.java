@@ -1,12 +1,24 @@
 package com.jay.dove.transport.command;
 
 import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.transport.limit.ConcurrencyLimiter;
+import com.jay.dove.transport.limit.RateLimiter;
+import com.jay.dove.util.KeyedOrderedExecutor;
+import com.jay.dove.util.VirtualThreads;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
 
 /**
  * <p>
@@ -22,21 +34,56 @@ public abstract class AbstractCommandHandler implements CommandHandler{
     private final ProcessorManager processorManager;
     private ExecutorService defaultExecutor;
     private final CommandFactory commandFactory;
+    /**
+     * dispatch every command to executor as its own task, used with virtual thread executor
+     */
+    private volatile boolean dispatchPerCommand;
+    /**
+     * pauses reading when dispatched commands pile up, null if disabled
+     */
+    private volatile ReadThrottle readThrottle;
+    /**
+     * sheds commands over the adaptive concurrency limit of their codes, null if disabled
+     */
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+    /**
+     * rejects commands over rate limits on I/O thread, null if disabled
+     */
+    private volatile RateLimiter rateLimiter;
+    /**
+     * runs default executor's commands in order of their keys, null if not used
+     */
+    private volatile KeyedOrderedExecutor orderedExecutor;
+    /**
+     * orders default executor's commands by deadline, null if FIFO
+     */
+    private volatile DeadlineScheduler deadlineScheduler;
+    /**
+     * sheds or reorders default executor's commands by queue sojourn, null if FIFO
+     */
+    private volatile CoDelScheduler coDelScheduler;
+    /**
+     * shares default executor fairly across connections, null if FIFO
+     */
+    private volatile FairScheduler fairScheduler;
 
     public AbstractCommandHandler(CommandFactory commandFactory) {
         this.commandFactory = commandFactory;
         this.processorManager = new ProcessorManager();
+        init();
     }
 
     public AbstractCommandHandler(ProcessorManager processorManager, CommandFactory commandFactory){
         this.processorManager = processorManager;
         this.commandFactory = commandFactory;
+        init();
     }
 
     public AbstractCommandHandler(ExecutorService defaultExecutor, CommandFactory commandFactory){
         this.defaultExecutor = defaultExecutor;
         this.processorManager = new ProcessorManager();
         this.commandFactory = commandFactory;
+        init();
     }
 
     @Override
@@ -44,41 +91,643 @@ public abstract class AbstractCommandHandler implements CommandHandler{
         processorManager.registerProcessor(cmd, processor);
     }
 
+    /**
+     * register a processor isolated in its own executor, other command codes are not affected by its slowness
+     * @param cmd {@link CommandCode}
+     * @param processor {@link Processor}
+     * @param executor executor of this code
+     * @param maxPending max commands of this code queued or running, commands beyond it are rejected
+     * @throws IllegalStateException a processor of this code is already registered
+     */
+    public void registerProcessor(CommandCode cmd, Processor processor, Executor executor, int maxPending){
+        processorManager.registerProcessor(cmd, processor, executor, maxPending);
+    }
+
+    /**
+     * init optional dispatch features enabled in configs
+     */
+    private void init(){
+        initVirtualThreadExecutor();
+        initReadThrottle();
+        initConcurrencyLimiter();
+        initOrderedExecutor();
+        initDeadlineScheduler();
+        initCoDelScheduler();
+        initRateLimiter();
+        initFairScheduler();
+    }
+
+    private void initVirtualThreadExecutor(){
+        if(DoveConfigs.virtualThreadExecutor()){
+            if(!VirtualThreads.isSupported()){
+                log.warn("virtual thread executor enabled, but not supported by Java {}", System.getProperty("java.version"));
+                return;
+            }
+            try{
+                registerVirtualThreadExecutor();
+            }catch (UnsupportedOperationException e){
+                // e.g. Java 19 and 20 without --enable-preview
+                log.warn("virtual thread executor enabled, but failed to create it, using default executor", e);
+            }
+        }
+    }
+
+    private void initReadThrottle(){
+        if(DoveConfigs.serverReadThrottle()){
+            this.readThrottle = new ReadThrottle(DoveConfigs.serverConnectionPendingHigh(), DoveConfigs.serverConnectionPendingLow(),
+                    DoveConfigs.serverGlobalPendingHigh(), DoveConfigs.serverGlobalPendingLow());
+        }
+    }
+
+    /**
+     * set read throttle of this handler's connections
+     * @param readThrottle {@link ReadThrottle}, null to disable
+     */
+    public void setReadThrottle(ReadThrottle readThrottle){
+        this.readThrottle = readThrottle;
+    }
+
+    private void initConcurrencyLimiter(){
+        String algorithm = DoveConfigs.serverConcurrencyLimit();
+        if(!DoveConfigs.SERVER_CONCURRENCY_LIMIT_DEFAULT.equalsIgnoreCase(algorithm)){
+            this.concurrencyLimiter = ConcurrencyLimiter.of(algorithm, DoveConfigs.serverConcurrencyLimitInitial(),
+                    DoveConfigs.serverConcurrencyLimitMin(), DoveConfigs.serverConcurrencyLimitMax());
+        }
+    }
+
+    /**
+     * set concurrency limiter of this handler, should be called before serving
+     * @param concurrencyLimiter {@link ConcurrencyLimiter}, null to disable
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter){
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter(){
+        return concurrencyLimiter;
+    }
+
+    private void initOrderedExecutor(){
+        if(DoveConfigs.serverOrderedExecutor()){
+            int parallelism = DoveConfigs.serverOrderedExecutorParallelism();
+            if(parallelism <= 0){
+                parallelism = Runtime.getRuntime().availableProcessors();
+            }
+            this.orderedExecutor = KeyedOrderedExecutor.newWorkStealingExecutor(parallelism, DoveConfigs.serverOrderedExecutorLanes());
+        }
+    }
+
+    /**
+     * run commands in order of their {@link Processor#orderingKey(RemotingCommand)}, by connection by default.
+     * Commands of different keys run in parallel, including commands of one batch.
+     * It replaces default executor, isolated and I/O thread processors are not affected.
+     * @param orderedExecutor {@link KeyedOrderedExecutor}, null to use default executor
+     */
+    public void registerOrderedExecutor(KeyedOrderedExecutor orderedExecutor){
+        this.orderedExecutor = orderedExecutor;
+    }
+
+    private void initDeadlineScheduler(){
+        if(DoveConfigs.serverDeadlineScheduling()){
+            enableDeadlineScheduling(DoveConfigs.serverDeadlineQueueSize());
+        }
+    }
+
+    /**
+     * run default executor's commands earliest deadline first, expired commands are dropped before execution
+     * @param maxPending max commands waiting in queue
+     */
+    public void enableDeadlineScheduling(int maxPending){
+        // follows executor registered later
+        this.deadlineScheduler = new DeadlineScheduler(task -> getDefaultExecutor().execute(task), maxPending);
+    }
+
+    /**
+     * get deadline scheduler and its statistics
+     * @return {@link DeadlineScheduler}, null if not enabled
+     */
+    public DeadlineScheduler getDeadlineScheduler(){
+        return deadlineScheduler;
+    }
+
+    private void initCoDelScheduler(){
+        if(DoveConfigs.serverCoDel()){
+            enableCoDel(CoDelScheduler.Mode.of(DoveConfigs.serverCoDelMode()), DoveConfigs.serverCoDelTarget(),
+                    DoveConfigs.serverCoDelInterval(), DoveConfigs.serverCoDelQueueSize());
+        }
+    }
+
+    /**
+     * shed or reorder default executor's commands when their queue sojourn stays above target.
+     * Deadline scheduling takes precedence if both are enabled
+     * @param mode {@link CoDelScheduler.Mode}
+     * @param targetMillis target sojourn
+     * @param intervalMillis interval the min sojourn must stay above target
+     * @param maxPending max commands waiting in queue
+     */
+    public void enableCoDel(CoDelScheduler.Mode mode, long targetMillis, long intervalMillis, int maxPending){
+        // follows executor registered later
+        this.coDelScheduler = new CoDelScheduler(task -> getDefaultExecutor().execute(task), mode, targetMillis, intervalMillis, maxPending);
+    }
+
+    /**
+     * get codel scheduler and its statistics
+     * @return {@link CoDelScheduler}, null if not enabled
+     */
+    public CoDelScheduler getCoDelScheduler(){
+        return coDelScheduler;
+    }
+
+    private void initRateLimiter(){
+        if(DoveConfigs.serverRateLimit()){
+            this.rateLimiter = new RateLimiter(DoveConfigs.serverConnectionRate(), DoveConfigs.serverConnectionBurst(),
+                    DoveConfigs.serverAddressRate(), DoveConfigs.serverAddressBurst());
+        }
+    }
+
+    /**
+     * set rate limiter of this handler, should be called before serving
+     * @param rateLimiter {@link RateLimiter}, null to disable
+     */
+    public void setRateLimiter(RateLimiter rateLimiter){
+        this.rateLimiter = rateLimiter;
+    }
+
+    public RateLimiter getRateLimiter(){
+        return rateLimiter;
+    }
+
+    private void initFairScheduler(){
+        if(DoveConfigs.serverFairQueuing()){
+            enableFairQueuing(DoveConfigs.serverFairQuantum(), DoveConfigs.serverFairQueueSize());
+        }
+    }
+
+    /**
+     * share default executor across connections by weighted deficit round robin.
+     * Deadline and codel scheduling take precedence if enabled
+     * @param quantum commands a connection of weight 1 runs in its turn
+     * @param maxPending max commands waiting in queue
+     */
+    public void enableFairQueuing(int quantum, int maxPending){
+        // follows executor registered later
+        this.fairScheduler = new FairScheduler(task -> getDefaultExecutor().execute(task), quantum, maxPending);
+    }
+
+    /**
+     * get fair scheduler, used to set connection weights and read statistics
+     * @return {@link FairScheduler}, null if not enabled
+     */
+    public FairScheduler getFairScheduler(){
+        return fairScheduler;
+    }
+
+    /**
+     * process each command on its own virtual thread, blocking processors don't need large thread pools.
+     * @throws UnsupportedOperationException runtime older than Java 21
+     */
+    public void registerVirtualThreadExecutor(){
+        this.defaultExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        this.dispatchPerCommand = true;
+    }
+
     @Override
-    @SuppressWarnings("rawtypes")
     public void handleCommand(ChannelHandlerContext context, Object msg) {
+        RateLimiter rateLimiter = this.rateLimiter;
+        if(rateLimiter != null){
+            // reject on I/O thread, before taking concurrency permits
+            long now = System.nanoTime();
+            msg = admit(context, msg, command -> rateLimiter.tryAcquire(context.channel(), command, now), false, "rate limit exceeded");
+            if(msg == null){
+                return;
+            }
+        }
+        ConcurrencyLimiter limiter = this.concurrencyLimiter;
+        // admission time of commands, 0 if not limited
+        long admitted = 0;
+        if(limiter != null){
+            // shed on I/O thread, before any work is queued
+            msg = admit(context, msg, command -> limiter.tryAcquire(command.getCommandCode()), true, "server overloaded");
+            if(msg == null){
+                return;
+            }
+            admitted = System.nanoTime();
+        }
+        final long admittedNanos = admitted;
         if(msg instanceof List){
-            List commands = (List)msg;
-            // handle multiple commands
-            Runnable task = ()->{
-                for(Object command : commands){
-                    process(context, command);
+            route(context, (List)msg, admittedNanos);
+        }else{
+            route(context, Collections.singletonList(msg), admittedNanos);
+        }
+    }
+
+    /**
+     * route commands by their processors.
+     * Commands of isolated codes go to their bulkheads, cheap processors run on I/O thread,
+     * others go to default executor.
+     * @param context {@link ChannelHandlerContext}
+     * @param commands commands in arrival order
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void route(ChannelHandlerContext context, List commands, long admittedNanos){
+        // commands of default executor, copied only when some commands are routed elsewhere
+        List rest = null;
+        List inline = null;
+        Map<Bulkhead, List> isolated = null;
+        for(int i = 0; i < commands.size(); i++){
+            RemotingCommand command = (RemotingCommand)commands.get(i);
+            CommandCode code = command.getCommandCode();
+            Bulkhead bulkhead = processorManager.getBulkhead(code);
+            boolean ioThread = bulkhead == null && runInIoThread(code);
+            if(bulkhead == null && !ioThread){
+                if(rest != null){
+                    rest.add(command);
                 }
-            };
-            // check whether dispatch task to executor or not
-            if(DoveConfigs.dispatchListToExecutor() && getDefaultExecutor() != null){
-                // try submit task to executor
-                try{
-                    getDefaultExecutor().submit(task);
-                }catch (RejectedExecutionException e){
-                    // task rejected by executor
-                    for(Object obj : commands){
-                        // send error response
-                        RemotingCommand command = (RemotingCommand)obj;
-                        RemotingCommand response = commandFactory.createExceptionResponse(command.getId(), "command rejected by command handler executor");
-                        context.channel().writeAndFlush(response);
-                    }
+                continue;
+            }
+            if(rest == null){
+                rest = new ArrayList(commands.subList(0, i));
+            }
+            if(ioThread){
+                if(inline == null){
+                    inline = new ArrayList();
                 }
+                inline.add(command);
             }else{
-                /*
-                    run task using I/O thread.
-                    This option is expensive.
-                 */
-                task.run();
+                if(isolated == null){
+                    isolated = new LinkedHashMap<>();
+                }
+                isolated.computeIfAbsent(bulkhead, k -> new ArrayList()).add(command);
+            }
+        }
+        if(rest == null){
+            dispatchDefault(context, commands, admittedNanos);
+            return;
+        }
+        if(inline != null){
+            // responses are flushed at channelReadComplete
+            processAll(context, inline, admittedNanos);
+        }
+        if(isolated != null){
+            isolated.forEach((bulkhead, list) -> dispatchIsolated(context, bulkhead, list, admittedNanos));
+        }
+        if(!rest.isEmpty()){
+            dispatchDefault(context, rest, admittedNanos);
+        }
+    }
+
+    private boolean runInIoThread(CommandCode code){
+        Processor processor = processorManager.getProcessor(code);
+        return processor != null && processor.runInIoThread();
+    }
+
+    /**
+     * dispatch commands to default executor
+     * @param context {@link ChannelHandlerContext}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings("rawtypes")
+    private void dispatchDefault(ChannelHandlerContext context, List commands, long admittedNanos){
+        KeyedOrderedExecutor ordered = this.orderedExecutor;
+        if(ordered != null){
+            dispatchOrdered(context, ordered, commands, admittedNanos);
+            return;
+        }
+        if(dispatchPerCommand){
+            // one task for each command, commands of a batch don't wait for each other
+            for(Object command : commands){
+                dispatch(context, command, admittedNanos);
+            }
+            return;
+        }
+        ExecutorService executor = getDefaultExecutor();
+        DeadlineScheduler scheduler = this.deadlineScheduler;
+        if(scheduler != null && executor != null){
+            dispatchByDeadline(context, scheduler, commands, admittedNanos);
+            return;
+        }
+        CoDelScheduler coDel = this.coDelScheduler;
+        if(coDel != null && executor != null){
+            dispatchByCoDel(context, coDel, commands, admittedNanos);
+            return;
+        }
+        FairScheduler fair = this.fairScheduler;
+        if(fair != null && executor != null){
+            dispatchFair(context, fair, commands, admittedNanos);
+            return;
+        }
+        if(DoveConfigs.dispatchListToExecutor() && executor != null){
+            // only commands waiting in executor are counted
+            Throttled throttled = throttled(context.channel(), commands.size());
+            // try submit task to executor
+            try{
+                executor.submit(throttled.wrap(() -> processAll(context, commands, admittedNanos)));
+            }catch (RejectedExecutionException e){
+                throttled.run(() -> reject(context, commands, admittedNanos, "command rejected by command handler executor"));
             }
         }else{
-            // handle one command
-            process(context, msg);
+            /*
+                run task using I/O thread.
+                This option is expensive.
+                Responses are flushed by the task, or at channelReadComplete if a read batch is running.
+             */
+            processAll(context, commands, admittedNanos);
+        }
+    }
+
+    /**
+     * schedule commands by their deadlines, each command is a task
+     * @param context {@link ChannelHandlerContext}
+     * @param scheduler {@link DeadlineScheduler}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings("rawtypes")
+    private void dispatchByDeadline(ChannelHandlerContext context, DeadlineScheduler scheduler, List commands, long admittedNanos){
+        for(Object obj : commands){
+            RemotingCommand command = (RemotingCommand)obj;
+            Throttled throttled = throttled(context.channel(), 1);
+            Runnable rejected = throttled.wrap(() -> reject(context, Collections.singletonList(command), admittedNanos, "command rejected, deadline queue is full"));
+            boolean scheduled = scheduler.schedule(command.getTimeoutMillis(),
+                    throttled.wrap(() -> process(context, command, admittedNanos)),
+                    throttled.wrap(() -> expire(context, command, admittedNanos)),
+                    rejected);
+            if(!scheduled){
+                rejected.run();
+            }
+        }
+    }
+
+    /**
+     * schedule commands by codel, each command is a task
+     * @param context {@link ChannelHandlerContext}
+     * @param scheduler {@link CoDelScheduler}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings("rawtypes")
+    private void dispatchByCoDel(ChannelHandlerContext context, CoDelScheduler scheduler, List commands, long admittedNanos){
+        long now = System.nanoTime();
+        for(Object obj : commands){
+            RemotingCommand command = (RemotingCommand)obj;
+            Throttled throttled = throttled(context.channel(), 1);
+            Runnable rejected = throttled.wrap(() -> reject(context, Collections.singletonList(command), admittedNanos, "command rejected, codel queue is full"));
+            long decoded = command.getDecodeNanos() != 0 ? command.getDecodeNanos() : now;
+            boolean scheduled = scheduler.schedule(decoded, throttled.wrap(() -> process(context, command, admittedNanos)), throttled.wrap(() -> {
+                command.releasePayload();
+                releaseLimit(command, admittedNanos, true);
+                RemotingCommand response = commandFactory.createOverloadResponse(command.getId(), "server overloaded, command queued too long");
+                ResponseBatcher.write(context.channel(), response);
+            }), rejected);
+            if(!scheduled){
+                rejected.run();
+            }
+        }
+    }
+
+    /**
+     * schedule commands in their connection's fair share, each command is a task
+     * @param context {@link ChannelHandlerContext}
+     * @param scheduler {@link FairScheduler}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings("rawtypes")
+    private void dispatchFair(ChannelHandlerContext context, FairScheduler scheduler, List commands, long admittedNanos){
+        for(Object obj : commands){
+            RemotingCommand command = (RemotingCommand)obj;
+            Throttled throttled = throttled(context.channel(), 1);
+            Runnable rejected = throttled.wrap(() -> reject(context, Collections.singletonList(command), admittedNanos, "command rejected, fair queue is full"));
+            boolean scheduled = scheduler.schedule(context.channel(), throttled.wrap(() -> process(context, command, admittedNanos)), rejected);
+            if(!scheduled){
+                rejected.run();
+            }
+        }
+    }
+
+    /**
+     * drop a command expired in queue with a timeout response
+     * @param context {@link ChannelHandlerContext}
+     * @param command {@link RemotingCommand}
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    private void expire(ChannelHandlerContext context, RemotingCommand command, long admittedNanos){
+        command.releasePayload();
+        releaseLimit(command, admittedNanos, true);
+        RemotingCommand response = commandFactory.createTimeoutResponse(command.getId(), "request timeout in server queue");
+        ResponseBatcher.write(context.channel(), response);
+    }
+
+    /**
+     * dispatch commands to ordered executor, commands of one key are processed in one task
+     * @param context {@link ChannelHandlerContext}
+     * @param ordered {@link KeyedOrderedExecutor}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void dispatchOrdered(ChannelHandlerContext context, KeyedOrderedExecutor ordered, List commands, long admittedNanos){
+        Object firstKey = orderingKey(context, (RemotingCommand)commands.get(0));
+        // grouped only when commands have different keys
+        Map<Object, List> groups = null;
+        for(int i = 1; i < commands.size(); i++){
+            RemotingCommand command = (RemotingCommand)commands.get(i);
+            Object key = orderingKey(context, command);
+            if(groups == null){
+                if(key.equals(firstKey)){
+                    continue;
+                }
+                groups = new LinkedHashMap<>();
+                groups.put(firstKey, new ArrayList(commands.subList(0, i)));
+            }
+            groups.computeIfAbsent(key, k -> new ArrayList()).add(command);
+        }
+        if(groups == null){
+            submitOrdered(context, ordered, firstKey, commands, admittedNanos);
+        }else{
+            groups.forEach((key, group) -> submitOrdered(context, ordered, key, group, admittedNanos));
+        }
+    }
+
+    private Object orderingKey(ChannelHandlerContext context, RemotingCommand command){
+        Processor processor = processorManager.getProcessor(command.getCommandCode());
+        Object key = processor == null ? null : processor.orderingKey(command);
+        return key != null ? key : context.channel();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void submitOrdered(ChannelHandlerContext context, KeyedOrderedExecutor ordered, Object key, List commands, long admittedNanos){
+        Throttled throttled = throttled(context.channel(), commands.size());
+        try{
+            ordered.execute(key, throttled.wrap(() -> processAll(context, commands, admittedNanos)));
+        }catch (RejectedExecutionException e){
+            throttled.run(() -> reject(context, commands, admittedNanos, "command rejected by ordered executor"));
+        }
+    }
+
+    /**
+     * dispatch commands of an isolated code to its bulkhead
+     * @param context {@link ChannelHandlerContext}
+     * @param bulkhead {@link Bulkhead}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings("rawtypes")
+    private void dispatchIsolated(ChannelHandlerContext context, Bulkhead bulkhead, List commands, long admittedNanos){
+        int count = commands.size();
+        if(!bulkhead.tryAcquire(count)){
+            reject(context, commands, admittedNanos, "command rejected, bulkhead of command code is full");
+            return;
+        }
+        Throttled throttled = throttled(context.channel(), count);
+        try{
+            bulkhead.getExecutor().execute(throttled.wrap(() -> {
+                try{
+                    processAll(context, commands, admittedNanos);
+                }finally {
+                    bulkhead.release(count);
+                }
+            }));
+        }catch (RejectedExecutionException e){
+            bulkhead.release(count);
+            throttled.run(() -> reject(context, commands, admittedNanos, "command rejected by bulkhead executor"));
+        }
+    }
+
+    /**
+     * process commands on current thread, responses are flushed once
+     * @param context {@link ChannelHandlerContext}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    @SuppressWarnings("rawtypes")
+    private void processAll(ChannelHandlerContext context, List commands, long admittedNanos){
+        boolean batching = ResponseBatcher.begin(context.channel());
+        try{
+            for(Object command : commands){
+                process(context, command, admittedNanos);
+            }
+        }finally {
+            if(batching){
+                ResponseBatcher.end(true);
+            }
+        }
+    }
+
+    /**
+     * send exception responses of commands that can't be dispatched
+     * @param context {@link ChannelHandlerContext}
+     * @param commands commands
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     * @param errMsg error message
+     */
+    @SuppressWarnings("rawtypes")
+    private void reject(ChannelHandlerContext context, List commands, long admittedNanos, String errMsg){
+        boolean batching = ResponseBatcher.begin(context.channel());
+        for(Object obj : commands){
+            // send error response
+            RemotingCommand command = (RemotingCommand)obj;
+            command.releasePayload();
+            releaseLimit(command, admittedNanos, true);
+            RemotingCommand response = commandFactory.createExceptionResponse(command.getId(), errMsg);
+            ResponseBatcher.write(context.channel(), response);
+        }
+        if(batching){
+            ResponseBatcher.end(true);
+        }
+    }
+
+    /**
+     * filter commands on I/O thread, responses of rejected commands are sent at once
+     * @param context {@link ChannelHandlerContext}
+     * @param msg command or List of commands
+     * @param admission whether a command is admitted
+     * @param overload respond rejected commands with overload responses instead of exception responses
+     * @param errMsg error message of rejected commands
+     * @return admitted commands, null if all commands are rejected
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Object admit(ChannelHandlerContext context, Object msg, Predicate<RemotingCommand> admission, boolean overload, String errMsg){
+        if(msg instanceof List){
+            List commands = (List)msg;
+            // copied only when some commands are shed
+            List admitted = null;
+            for(int i = 0; i < commands.size(); i++){
+                RemotingCommand command = (RemotingCommand)commands.get(i);
+                if(admission.test(command)){
+                    if(admitted != null){
+                        admitted.add(command);
+                    }
+                }else{
+                    if(admitted == null){
+                        admitted = new ArrayList(commands.subList(0, i));
+                    }
+                    refuse(context, command, overload, errMsg);
+                }
+            }
+            if(admitted == null){
+                return commands;
+            }
+            return admitted.isEmpty() ? null : admitted;
+        }
+        RemotingCommand command = (RemotingCommand)msg;
+        if(admission.test(command)){
+            return command;
+        }
+        refuse(context, command, overload, errMsg);
+        return null;
+    }
+
+    private void refuse(ChannelHandlerContext context, RemotingCommand command, boolean overload, String errMsg){
+        command.releasePayload();
+        String message = errMsg + ", command code: " + command.getCommandCode().value();
+        RemotingCommand response = overload ? commandFactory.createOverloadResponse(command.getId(), message)
+                : commandFactory.createExceptionResponse(command.getId(), message);
+        ResponseBatcher.write(context.channel(), response);
+    }
+
+    /**
+     * count commands of a channel as dispatched to read throttle
+     * @param channel {@link Channel}
+     * @param count commands count
+     * @return {@link Throttled}, its wrapped action counts them processed when it ends
+     */
+    private Throttled throttled(Channel channel, int count){
+        ReadThrottle throttle = this.readThrottle;
+        if(throttle == null){
+            return Throttled.NONE;
+        }
+        throttle.onDispatched(channel, count);
+        return new Throttled(throttle, channel, count);
+    }
+
+    /**
+     * report latency of an admitted command to concurrency limiter
+     * @param command {@link RemotingCommand}
+     * @param admittedNanos admission time, 0 if not admitted by limiter
+     * @param dropped whether the command was dropped instead of processed
+     */
+    private void releaseLimit(RemotingCommand command, long admittedNanos, boolean dropped){
+        ConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if(admittedNanos != 0 && limiter != null){
+            limiter.release(command.getCommandCode(), System.nanoTime() - admittedNanos, dropped);
+        }
+    }
+
+    private void dispatch(ChannelHandlerContext context, Object msg, long admittedNanos){
+        Throttled throttled = throttled(context.channel(), 1);
+        try{
+            getDefaultExecutor().execute(throttled.wrap(() -> process(context, msg, admittedNanos)));
+        }catch (RejectedExecutionException e){
+            throttled.run(() -> {
+                RemotingCommand command = (RemotingCommand)msg;
+                command.releasePayload();
+                releaseLimit(command, admittedNanos, true);
+                RemotingCommand response = commandFactory.createExceptionResponse(command.getId(), "command rejected by command handler executor");
+                ResponseBatcher.write(context.channel(), response);
+            });
         }
     }
 
@@ -86,15 +735,20 @@ public abstract class AbstractCommandHandler implements CommandHandler{
      * process one command
      * @param context {@link ChannelHandlerContext}
      * @param msg {@link RemotingCommand}
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
      */
-    private void process(ChannelHandlerContext context, Object msg){
+    private void process(ChannelHandlerContext context, Object msg, long admittedNanos){
+        RemotingCommand command = (RemotingCommand) msg;
+        boolean expired = false;
+        // async commands release limit on completion
+        boolean async = false;
         try{
-            RemotingCommand command = (RemotingCommand) msg;
             // server side fail-fast, check timeout
             if(command.getTimeoutMillis() <= System.currentTimeMillis()){
                 // create timeout response and send
+                expired = true;
                 RemotingCommand response = commandFactory.createTimeoutResponse(command.getId(), "request timeout");
-                context.channel().writeAndFlush(response);
+                ResponseBatcher.write(context.channel(), response);
             }
             else{
                 // get the command code
@@ -102,13 +756,55 @@ public abstract class AbstractCommandHandler implements CommandHandler{
                 // find processor for this command code
                 Processor processor = processorManager.getProcessor(code);
                 // process command
-                processor.process(context, command);
+                if(processor instanceof AsyncProcessor){
+                    processAsync(context, (AsyncProcessor) processor, command, admittedNanos);
+                    async = true;
+                }else{
+                    processor.process(context, command);
+                }
             }
         }catch (Throwable e){
             handleException(context, e);
+        }finally {
+            command.releasePayload();
+            if(!async){
+                releaseLimit(command, admittedNanos, expired);
+            }
         }
     }
 
+    /**
+     * start an async command, its response is sent on completion
+     * @param context {@link ChannelHandlerContext}
+     * @param processor {@link AsyncProcessor}
+     * @param command {@link RemotingCommand}
+     * @param admittedNanos admission time by concurrency limiter, 0 if not limited
+     */
+    private void processAsync(ChannelHandlerContext context, AsyncProcessor processor, RemotingCommand command, long admittedNanos){
+        int id = command.getId();
+        long deadline = command.getTimeoutMillis();
+        processor.processAsync(context, command).whenComplete((response, error) -> {
+            try{
+                if(deadline <= System.currentTimeMillis()){
+                    // client already gave up
+                    if(response != null){
+                        response.releasePayload();
+                    }
+                    return;
+                }
+                if(error != null){
+                    handleException(context, error);
+                    response = commandFactory.createExceptionResponse(id, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+                if(response != null){
+                    processor.sendResponse(context, response);
+                }
+            }finally {
+                releaseLimit(command, admittedNanos, false);
+            }
+        });
+    }
+
     private void handleException(ChannelHandlerContext context, Throwable cause){
         // handle exception here
         log.error("process error: ",cause);
@@ -122,5 +818,41 @@ public abstract class AbstractCommandHandler implements CommandHandler{
     @Override
     public void registerDefaultExecutor(ExecutorService executor) {
         this.defaultExecutor = executor;
+        this.dispatchPerCommand = false;
+    }
+
+    /**
+     * commands counted by read throttle from dispatch until their action ends.
+     * Task, expire and reject actions are alternatives, exactly one wrapped action of the commands runs
+     */
+    private static final class Throttled{
+        static final Throttled NONE = new Throttled(null, null, 0);
+
+        private final ReadThrottle throttle;
+        private final Channel channel;
+        private final int count;
+
+        Throttled(ReadThrottle throttle, Channel channel, int count) {
+            this.throttle = throttle;
+            this.channel = channel;
+            this.count = count;
+        }
+
+        Runnable wrap(Runnable action){
+            if(throttle == null){
+                return action;
+            }
+            return () -> run(action);
+        }
+
+        void run(Runnable action){
+            try{
+                action.run();
+            }finally {
+                if(throttle != null){
+                    throttle.onProcessed(channel, count);
+                }
+            }
+        }
     }
 }
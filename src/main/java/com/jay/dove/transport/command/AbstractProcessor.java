@@ -5,7 +5,8 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * <p>
  *  Abstract processor.
- *  overrides the sendResponse method
+ *  overrides the sendResponse method.
+ *  Responses sent within a command batch are flushed once at the end of the batch.
  * </p>
  *
  * @author Jay
@@ -15,7 +16,7 @@ public abstract class AbstractProcessor implements Processor {
     @Override
     public final void sendResponse(ChannelHandlerContext context, RemotingCommand response) {
         if(response != null && response.getTimeoutMillis() > System.currentTimeMillis()){
-            context.channel().writeAndFlush(response);
+            ResponseBatcher.write(context.channel(), response);
         }
     }
 }
@@ -0,0 +1,71 @@
+package com.jay.dove.transport.command;
+
+import com.jay.dove.transport.connection.Connection;
+import com.jay.dove.transport.protocol.Protocol;
+import com.jay.dove.transport.protocol.ProtocolManager;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * <p>
+ *  Async processor.
+ *  A command is processed without blocking the executor thread, its response is sent when the returned stage completes,
+ *  on whichever thread completes it.
+ *  Responses are dropped if the request already expired, failed stages get exception responses.
+ *  The command's payload is released after {@link #processAsync(ChannelHandlerContext, RemotingCommand)} returns,
+ *  retain it if the stage still needs it.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/24 10:05
+ */
+@Slf4j
+public abstract class AsyncProcessor extends AbstractProcessor {
+
+    /**
+     * process a command asynchronously
+     * @param context {@link ChannelHandlerContext}
+     * @param command {@link RemotingCommand}
+     * @return stage of response, completed with null if nothing to respond
+     */
+    public abstract CompletionStage<RemotingCommand> processAsync(ChannelHandlerContext context, RemotingCommand command);
+
+    /**
+     * command handlers unaware of async processors send the response on completion
+     * @param context {@link ChannelHandlerContext}
+     * @param msg {@link RemotingCommand}
+     */
+    @Override
+    public void process(ChannelHandlerContext context, Object msg) {
+        RemotingCommand command = (RemotingCommand) msg;
+        int id = command.getId();
+        processAsync(context, command).whenComplete((response, error) -> {
+            if(error != null){
+                log.error("async process error, command id: {}", id, error);
+                response = createExceptionResponse(context, id, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+            if(response != null){
+                sendResponse(context, response);
+            }
+        });
+    }
+
+    /**
+     * create exception response with the command factory of channel's protocol
+     * @param context {@link ChannelHandlerContext}
+     * @param id command id
+     * @param cause error
+     * @return null if channel's protocol is unknown
+     */
+    private RemotingCommand createExceptionResponse(ChannelHandlerContext context, int id, Throwable cause){
+        Protocol protocol = ProtocolManager.getProtocol(context.channel().attr(Connection.PROTOCOL).get());
+        if(protocol == null){
+            log.warn("protocol of channel unknown, exception response not sent, command id: {}", id);
+            return null;
+        }
+        return protocol.getCommandFactory().createExceptionResponse(id, cause);
+    }
+}
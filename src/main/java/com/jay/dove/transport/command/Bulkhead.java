@@ -0,0 +1,61 @@
+package com.jay.dove.transport.command;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  Bulkhead of a CommandCode.
+ *  Commands of the code run in a dedicated executor,
+ *  and commands queued or running are bounded, so a slow command code can't starve others.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/22 10:15
+ */
+public class Bulkhead {
+    private final Executor executor;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger(0);
+
+    public Bulkhead(Executor executor, int maxPending) {
+        if(executor == null || maxPending <= 0){
+            throw new IllegalArgumentException("bulkhead needs an executor and positive max pending, maxPending: " + maxPending);
+        }
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * reserve room for commands
+     * @param count commands count
+     * @return false if the bulkhead is full
+     */
+    public boolean tryAcquire(int count){
+        for(;;){
+            int current = pending.get();
+            if(current + count > maxPending){
+                return false;
+            }
+            if(pending.compareAndSet(current, current + count)){
+                return true;
+            }
+        }
+    }
+
+    public void release(int count){
+        pending.addAndGet(-count);
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public int pending(){
+        return pending.get();
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+}
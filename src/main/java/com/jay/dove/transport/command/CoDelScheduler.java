@@ -0,0 +1,223 @@
+package com.jay.dove.transport.command;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *  CoDel style scheduler.
+ *  Sojourn time of a task is the time from its command decoded to it taken from queue.
+ *  The min sojourn of each interval is tracked, if it stays above target for a whole interval, the queue is overloaded:
+ *  a standing queue, not a burst. While overloaded,
+ *  {@link Mode#SHED} drops tasks waited longer than twice the target, keeping FIFO order,
+ *  {@link Mode#LIFO} serves the newest tasks first, so fresh requests stay fast while old ones wait for their deadlines.
+ *  Each scheduled task submits one runner to the executor, a runner takes a task by the current mode when it starts.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/26 10:40
+ */
+@Slf4j
+public class CoDelScheduler {
+    public enum Mode{
+        /**
+         * drop tasks queued too long while overloaded
+         */
+        SHED,
+        /**
+         * serve newest tasks first while overloaded
+         */
+        LIFO;
+
+        public static Mode of(String name){
+            for (Mode mode : values()) {
+                if(mode.name().equalsIgnoreCase(name)){
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("unknown codel mode: " + name);
+        }
+    }
+
+    private final Executor executor;
+    private final Mode mode;
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final int maxPending;
+
+    private final Deque<Entry> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+
+    /**
+     * end of current interval and min sojourn within it
+     */
+    private final AtomicLong intervalEnd;
+    private final AtomicLong minSojourn = new AtomicLong(0);
+    private volatile boolean overloaded;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder lifoTaken = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CoDelScheduler(Executor executor, Mode mode, long targetMillis, long intervalMillis, int maxPending) {
+        if(targetMillis <= 0 || intervalMillis <= 0 || maxPending <= 0){
+            throw new IllegalArgumentException("illegal codel settings, target: " + targetMillis + ", interval: " + intervalMillis + ", maxPending: " + maxPending);
+        }
+        this.executor = executor;
+        this.mode = mode;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.maxPending = maxPending;
+        this.intervalEnd = new AtomicLong(System.nanoTime() + intervalNanos);
+    }
+
+    /**
+     * schedule a task
+     * @param enqueuedNanos nano time the task's command was decoded
+     * @param task {@link Runnable}
+     * @param onShed runs instead of task if it is shed
+     * @param onReject runs instead of task if it is dropped for another task's rejected runner
+     * @return false if queue is full or executor rejected
+     */
+    public boolean schedule(long enqueuedNanos, Runnable task, Runnable onShed, Runnable onReject){
+        if(pending.incrementAndGet() > maxPending){
+            pending.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        Entry entry = new Entry(enqueuedNanos, task, onShed, onReject);
+        queue.offerLast(entry);
+        try{
+            executor.execute(this::runNext);
+        }catch (RejectedExecutionException e){
+            // one runner per queued task, if this task is already taken by another runner, drop the newest one instead
+            Entry removed = queue.removeLastOccurrence(entry) ? entry : queue.pollLast();
+            if(removed == null){
+                return true;
+            }
+            pending.decrementAndGet();
+            rejected.increment();
+            if(removed == entry){
+                return false;
+            }
+            try{
+                removed.onReject.run();
+            }catch (Throwable t){
+                log.error("codel scheduled task error ", t);
+            }
+        }
+        return true;
+    }
+
+    private void runNext(){
+        boolean lifo = mode == Mode.LIFO && overloaded;
+        Entry entry = lifo ? queue.pollLast() : queue.pollFirst();
+        if(entry == null){
+            return;
+        }
+        pending.decrementAndGet();
+        long now = System.nanoTime();
+        long sojourn = now - entry.enqueuedNanos;
+        boolean drop = onDequeue(sojourn, now);
+        try{
+            if(mode == Mode.SHED && drop){
+                shed.increment();
+                entry.onShed.run();
+            }else{
+                if(lifo){
+                    lifoTaken.increment();
+                }
+                executed.increment();
+                entry.task.run();
+            }
+        }catch (Throwable e){
+            log.error("codel scheduled task error ", e);
+        }
+    }
+
+    /**
+     * record a sojourn, a new interval decides overloaded by the last interval's min sojourn
+     * @param sojourn sojourn nanos
+     * @param now nano time
+     * @return true if the task should be dropped
+     */
+    private boolean onDequeue(long sojourn, long now){
+        long end = intervalEnd.get();
+        if(now - end > 0 && intervalEnd.compareAndSet(end, now + intervalNanos)){
+            boolean last = overloaded;
+            overloaded = minSojourn.getAndSet(sojourn) > targetNanos;
+            if(last != overloaded){
+                log.debug("command queue {}, sojourn: {}us", overloaded ? "overloaded" : "recovered", sojourn / 1000);
+            }
+        }else{
+            long min;
+            while(sojourn < (min = minSojourn.get()) && !minSojourn.compareAndSet(min, sojourn)){
+                // retry
+            }
+        }
+        return overloaded && sojourn > 2 * targetNanos;
+    }
+
+    public boolean isOverloaded(){
+        return overloaded;
+    }
+
+    public int pending(){
+        return pending.get();
+    }
+
+    public long executed(){
+        return executed.sum();
+    }
+
+    public long shed(){
+        return shed.sum();
+    }
+
+    /**
+     * tasks taken newest first while overloaded
+     * @return long
+     */
+    public long lifoTaken(){
+        return lifoTaken.sum();
+    }
+
+    public long rejected(){
+        return rejected.sum();
+    }
+
+    public String statistics(){
+        return "CoDelScheduler{" +
+                "mode=" + mode +
+                ", overloaded=" + overloaded +
+                ", executed=" + executed() +
+                ", shed=" + shed() +
+                ", lifoTaken=" + lifoTaken() +
+                ", rejected=" + rejected() +
+                ", pending=" + pending() +
+                '}';
+    }
+
+    static final class Entry{
+        private final long enqueuedNanos;
+        private final Runnable task;
+        private final Runnable onShed;
+        private final Runnable onReject;
+
+        Entry(long enqueuedNanos, Runnable task, Runnable onShed, Runnable onReject) {
+            this.enqueuedNanos = enqueuedNanos;
+            this.task = task;
+            this.onShed = onShed;
+            this.onReject = onReject;
+        }
+    }
+}
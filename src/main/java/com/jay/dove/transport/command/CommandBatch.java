@@ -0,0 +1,45 @@
+package com.jay.dove.transport.command;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  A batch of commands written as one frame.
+ *  Protocol encoders supporting batch encode it into a single frame,
+ *  the decoder of the receiving side outputs its commands as a List.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/17 10:30
+ */
+public class CommandBatch {
+    private final List<RemotingCommand> commands;
+
+    public CommandBatch(List<RemotingCommand> commands) {
+        this.commands = commands;
+    }
+
+    public List<RemotingCommand> getCommands() {
+        return commands;
+    }
+
+    public int size(){
+        return commands.size();
+    }
+
+    /**
+     * release payloads of all commands, called by encoders after encoding
+     */
+    public void releasePayloads(){
+        for(RemotingCommand command : commands){
+            command.releasePayload();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CommandBatch{" +
+                "size=" + commands.size() +
+                '}';
+    }
+}
@@ -12,32 +12,65 @@ import io.netty.util.Attribute;
  * <p>
  *  Command Channel Handler。
  *  This handler gets this channel's protocol and protocol's commandHandler.
+ *  Responses produced by I/O thread within one read are flushed once at channelReadComplete.
  * </p>
  *
  * @author Jay
  * @date 2022/01/08 14:53
  */
 public class CommandChannelHandler extends ChannelInboundHandlerAdapter {
+    /**
+     * protocol of this channel, resolved on first read
+     */
+    private Protocol protocol;
+
+    /**
+     * responses written by inline processing, flushed at channelReadComplete
+     */
+    private boolean flushPending;
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        // get the protocol of this channel
-        Attribute<ProtocolCode> attr = ctx.channel().attr(Connection.PROTOCOL);
-        if(attr.get() != null){
-            Protocol protocol = ProtocolManager.getProtocol(attr.get());
-            // call protocol's command handler
-            protocol.getCommandHandler().handleCommand(ctx, msg);
+        Protocol protocol = getProtocol(ctx);
+        if(protocol != null){
+            // responses of commands processed by I/O thread are flushed at channelReadComplete
+            boolean batching = ResponseBatcher.begin(ctx.channel());
+            try{
+                // call protocol's command handler
+                protocol.getCommandHandler().handleCommand(ctx, msg);
+            }finally {
+                if(batching && ResponseBatcher.end(false)){
+                    flushPending = true;
+                }
+            }
         }
         ctx.fireChannelRead(msg);
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if(flushPending){
+            flushPending = false;
+            ctx.channel().flush();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        // get the protocol of this channel
-        Attribute<ProtocolCode> attr = ctx.channel().attr(Connection.PROTOCOL);
-        if(attr.get() != null){
-            Protocol protocol = ProtocolManager.getProtocol(attr.get());
+        Protocol protocol = getProtocol(ctx);
+        if(protocol != null){
             // call protocol's command handler
             protocol.getCommandHandler().channelInactive(ctx);
         }
     }
+
+    private Protocol getProtocol(ChannelHandlerContext ctx){
+        if(protocol == null){
+            // get the protocol of this channel
+            Attribute<ProtocolCode> attr = ctx.channel().attr(Connection.PROTOCOL);
+            protocol = ProtocolManager.getProtocol(attr.get());
+        }
+        return protocol;
+    }
 }
@@ -1,8 +1,6 @@
 package com.jay.dove.transport.command;
 
-import io.netty.util.internal.ObjectUtil;
-
-import java.util.Objects;
+import java.io.Serializable;
 
 /**
  * <p>
@@ -12,13 +10,36 @@ import java.util.Objects;
  * @author Jay
  * @date 2022/01/08 11:05
  */
-public class CommandCode {
+public class CommandCode implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * interned codes, indexed by code &amp; 0xFFFF.
+     * Filled lazily, racing threads may create duplicates which are still equal.
+     */
+    private static final CommandCode[] CODES = new CommandCode[1 << 16];
+
     private final short code;
 
     public CommandCode(short code) {
         this.code = code;
     }
 
+    /**
+     * get the interned CommandCode, decoders should use this instead of the constructor
+     * @param code short code
+     * @return {@link CommandCode}
+     */
+    public static CommandCode valueOf(short code){
+        int index = code & 0xFFFF;
+        CommandCode commandCode = CODES[index];
+        if(commandCode == null){
+            commandCode = new CommandCode(code);
+            CODES[index] = commandCode;
+        }
+        return commandCode;
+    }
+
     /**
      * the value of a CommandCode
      * @return short
@@ -27,9 +48,17 @@ public class CommandCode {
         return code;
     }
 
+    /**
+     * deserialized codes are interned too
+     * @return {@link CommandCode}
+     */
+    private Object readResolve(){
+        return valueOf(code);
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(code);
+        return code;
     }
 
     @Override
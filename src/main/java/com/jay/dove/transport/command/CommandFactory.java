@@ -60,4 +60,14 @@ public interface CommandFactory {
     RemotingCommand createExceptionResponse(int id, String errMsg);
 
     RemotingCommand createExceptionResponse(int id, Throwable cause);
+
+    /**
+     * create a response of a command shed by an overloaded server, it is sent before any work is done
+     * @param id request id
+     * @param errMsg error message
+     * @return {@link RemotingCommand}
+     */
+    default RemotingCommand createOverloadResponse(int id, String errMsg){
+        return createExceptionResponse(id, errMsg);
+    }
 }
@@ -0,0 +1,228 @@
+package com.jay.dove.transport.command;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *  Earliest deadline first scheduler.
+ *  Tasks wait in a queue ordered by deadline, each scheduled task submits one runner to the executor,
+ *  and a runner takes the earliest deadline task when it starts instead of the task it was submitted for.
+ *  Expired tasks are at the head of the queue, a runner removes all of them at once and runs their expire actions,
+ *  so no executor time is spent on work whose clients already gave up.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/25 10:30
+ */
+@Slf4j
+public class DeadlineScheduler {
+    private final Executor executor;
+    private final int maxPending;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    /**
+     * lock of queue, not synchronized so virtual threads are not pinned
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * keeps FIFO order of equal deadlines, guarded by lock
+     */
+    private long sequence;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder sweeps = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public DeadlineScheduler(Executor executor, int maxPending) {
+        if(maxPending <= 0){
+            throw new IllegalArgumentException("max pending must be positive: " + maxPending);
+        }
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * schedule a task
+     * @param deadline deadline millis
+     * @param task runs before deadline
+     * @param onExpire runs instead of task if deadline passed before it starts
+     * @param onReject runs instead of task if it is dropped for another task's rejected runner
+     * @return false if queue is full or executor rejected
+     */
+    public boolean schedule(long deadline, Runnable task, Runnable onExpire, Runnable onReject){
+        Entry entry;
+        lock.lock();
+        try{
+            if(queue.size() >= maxPending){
+                rejected.increment();
+                return false;
+            }
+            entry = new Entry(deadline, sequence++, task, onExpire, onReject);
+            queue.offer(entry);
+            scheduled.increment();
+        }finally {
+            lock.unlock();
+        }
+        try{
+            executor.execute(this::runNext);
+        }catch (RejectedExecutionException e){
+            Entry removed;
+            lock.lock();
+            try{
+                // one runner per queued task, if this task is already taken by another runner, drop the latest one instead
+                removed = queue.remove(entry) ? entry : removeLatest();
+            }finally {
+                lock.unlock();
+            }
+            if(removed == null){
+                return true;
+            }
+            scheduled.decrement();
+            rejected.increment();
+            if(removed == entry){
+                return false;
+            }
+            run(removed.onReject);
+        }
+        return true;
+    }
+
+    /**
+     * remove the latest deadline task, called with lock held
+     * @return {@link Entry}, null if queue is empty
+     */
+    private Entry removeLatest(){
+        Entry latest = null;
+        for (Entry entry : queue) {
+            if(latest == null || entry.compareTo(latest) > 0){
+                latest = entry;
+            }
+        }
+        if(latest != null){
+            queue.remove(latest);
+        }
+        return latest;
+    }
+
+    /**
+     * drop expired tasks, then run the earliest deadline task
+     */
+    private void runNext(){
+        List<Entry> expiredEntries = null;
+        Entry next;
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try{
+            Entry head;
+            while((head = queue.peek()) != null && head.deadline <= now){
+                queue.poll();
+                if(expiredEntries == null){
+                    expiredEntries = new ArrayList<>();
+                }
+                expiredEntries.add(head);
+            }
+            next = queue.poll();
+        }finally {
+            lock.unlock();
+        }
+        if(expiredEntries != null){
+            sweeps.increment();
+            expired.add(expiredEntries.size());
+            for (Entry entry : expiredEntries) {
+                run(entry.onExpire);
+            }
+        }
+        if(next != null){
+            executed.increment();
+            run(next.task);
+        }
+    }
+
+    private static void run(Runnable runnable){
+        try{
+            runnable.run();
+        }catch (Throwable e){
+            log.error("deadline scheduled task error ", e);
+        }
+    }
+
+    public int pending(){
+        lock.lock();
+        try{
+            return queue.size();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    public long scheduled(){
+        return scheduled.sum();
+    }
+
+    public long executed(){
+        return executed.sum();
+    }
+
+    /**
+     * tasks dropped because their deadlines passed in queue
+     * @return long
+     */
+    public long expired(){
+        return expired.sum();
+    }
+
+    /**
+     * times expired tasks were dropped, each drops one or more tasks
+     * @return long
+     */
+    public long sweeps(){
+        return sweeps.sum();
+    }
+
+    public long rejected(){
+        return rejected.sum();
+    }
+
+    public String statistics(){
+        return "DeadlineScheduler{" +
+                "scheduled=" + scheduled() +
+                ", executed=" + executed() +
+                ", expired=" + expired() +
+                ", sweeps=" + sweeps() +
+                ", rejected=" + rejected() +
+                ", pending=" + pending() +
+                '}';
+    }
+
+    static final class Entry implements Comparable<Entry>{
+        private final long deadline;
+        private final long sequence;
+        private final Runnable task;
+        private final Runnable onExpire;
+        private final Runnable onReject;
+
+        Entry(long deadline, long sequence, Runnable task, Runnable onExpire, Runnable onReject) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+            this.onExpire = onExpire;
+            this.onReject = onReject;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Long.compare(deadline, o.deadline);
+            return result != 0 ? result : Long.compare(sequence, o.sequence);
+        }
+    }
+}
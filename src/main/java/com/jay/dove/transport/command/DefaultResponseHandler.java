@@ -42,18 +42,19 @@ public class DefaultResponseHandler extends ChannelInboundHandlerAdapter {
             // remove invoke future
             InvokeFuture invokeFuture = connection.removeInvokeFuture(cmd.getId());
             if(invokeFuture != null){
-                // put response
-                invokeFuture.putResponse(cmd);
-                // execute callback
+                // put response, callback is executed by future
                 try{
-                    invokeFuture.executeCallback();
+                    invokeFuture.putResponse(cmd);
                 }catch (Exception e){
                     log.error("callback execution error ", e);
                 }
             }else{
+                // nobody will consume this response
+                cmd.releasePayload();
                 log.warn("missing invoke future for id: {}, conn: {}", cmd.getId(), connection);
             }
         }else{
+            cmd.releasePayload();
             log.warn("missing connection instance");
         }
     }
@@ -0,0 +1,301 @@
+package com.jay.dove.transport.command;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *  Weighted fair scheduler across connections, by deficit round robin.
+ *  Each connection has its own queue, connections with queued commands take turns,
+ *  and a connection runs at most weight * quantum commands in its turn,
+ *  so a client pipelining huge batches only gets its share of the executor.
+ *  When the queue is full, the newest task of the longest connection queue is dropped for a new task of a shorter one.
+ *  Weight of a connection is 1 by default, and can only be changed by {@link #setWeight(Channel, int)},
+ *  e.g. by a processor after the client is authenticated, see {@link AbstractCommandHandler#getFairScheduler()}.
+ *  Each scheduled task submits one runner to the executor, a runner takes the next task in round robin order when it starts.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/28 10:20
+ */
+@Slf4j
+public class FairScheduler {
+    private static final AttributeKey<Flow> FLOW = AttributeKey.valueOf("fair-scheduler-flow");
+
+    private final Executor executor;
+    private final int quantum;
+    private final int maxPending;
+
+    /**
+     * connections with queued tasks in round robin order, guarded by lock
+     */
+    private final Deque<Flow> activeFlows = new ArrayDeque<>();
+    /**
+     * lock of flows, not synchronized so virtual threads are not pinned
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private int pending;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public FairScheduler(Executor executor, int quantum, int maxPending) {
+        if(quantum <= 0 || maxPending <= 0){
+            throw new IllegalArgumentException("illegal fair scheduler settings, quantum: " + quantum + ", maxPending: " + maxPending);
+        }
+        this.executor = executor;
+        this.quantum = quantum;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * schedule a task of a connection
+     * @param channel connection's {@link Channel}
+     * @param task {@link Runnable}
+     * @param onReject runs instead of task if it is dropped for a shorter connection's task, or for another task's rejected runner
+     * @return false if queue is full and this connection's queue is the longest, or executor rejected
+     */
+    public boolean schedule(Channel channel, Runnable task, Runnable onReject){
+        Flow flow = getFlow(channel);
+        Entry entry = new Entry(task, onReject);
+        Entry dropped = null;
+        lock.lock();
+        try{
+            if(pending >= maxPending){
+                // full queue drops from the longest flow, so one connection can't take all slots from others
+                Flow longest = longestFlow();
+                if(longest == null || longest.tasks.size() <= flow.tasks.size() + 1){
+                    rejected.increment();
+                    return false;
+                }
+                dropped = removeLast(longest);
+            }
+            pending++;
+            flow.tasks.offer(entry);
+            if(!flow.active){
+                flow.active = true;
+                flow.deficit = (long) flow.weight * quantum;
+                activeFlows.offerLast(flow);
+            }
+        }finally {
+            lock.unlock();
+        }
+        if(dropped != null){
+            // the dropped task's runner takes this task
+            rejected.increment();
+            run(dropped.onReject);
+            return true;
+        }
+        try{
+            executor.execute(this::runNext);
+        }catch (RejectedExecutionException e){
+            Entry removed;
+            lock.lock();
+            try{
+                // one runner per queued task, if this task is already taken by another runner,
+                // drop the newest task of the longest flow instead
+                if(flow.tasks.remove(entry)){
+                    removed = entry;
+                    onRemoved(flow);
+                }else{
+                    Flow longest = longestFlow();
+                    removed = longest == null ? null : removeLast(longest);
+                }
+            }finally {
+                lock.unlock();
+            }
+            if(removed == null){
+                return true;
+            }
+            rejected.increment();
+            if(removed == entry){
+                return false;
+            }
+            run(removed.onReject);
+        }
+        return true;
+    }
+
+    /**
+     * remove the newest task of a flow, called with lock held
+     * @param flow {@link Flow}
+     * @return {@link Entry}, null if flow has no task
+     */
+    private Entry removeLast(Flow flow){
+        Entry entry = flow.tasks.pollLast();
+        if(entry != null){
+            onRemoved(flow);
+        }
+        return entry;
+    }
+
+    /**
+     * a queued task removed without running, called with lock held
+     * @param flow {@link Flow}
+     */
+    private void onRemoved(Flow flow){
+        pending--;
+        if(flow.tasks.isEmpty() && flow.active){
+            activeFlows.remove(flow);
+            flow.active = false;
+        }
+    }
+
+    /**
+     * active flow with most queued tasks, called with lock held
+     * @return {@link Flow}, null if no flow is active
+     */
+    private Flow longestFlow(){
+        Flow longest = null;
+        for (Flow flow : activeFlows) {
+            if(longest == null || flow.tasks.size() > longest.tasks.size()){
+                longest = flow;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * set weight of a connection, applied from its next turn
+     * @param channel connection's {@link Channel}
+     * @param weight positive weight
+     */
+    public void setWeight(Channel channel, int weight){
+        if(weight <= 0){
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+        getFlow(channel).weight = weight;
+    }
+
+    private void runNext(){
+        Entry entry = next();
+        if(entry == null){
+            return;
+        }
+        executed.increment();
+        run(entry.task);
+    }
+
+    private static void run(Runnable runnable){
+        try{
+            runnable.run();
+        }catch (Throwable e){
+            log.error("fair scheduled task error ", e);
+        }
+    }
+
+    /**
+     * take next task by deficit round robin
+     * @return {@link Entry}, null if no task left
+     */
+    private Entry next(){
+        lock.lock();
+        try{
+            Flow flow;
+            while((flow = activeFlows.peekFirst()) != null){
+                Entry task;
+                if(flow.deficit > 0 && (task = flow.tasks.poll()) != null){
+                    flow.deficit--;
+                    pending--;
+                    if(flow.tasks.isEmpty()){
+                        // idle flows don't keep deficit
+                        activeFlows.pollFirst();
+                        flow.active = false;
+                    }
+                    return task;
+                }
+                activeFlows.pollFirst();
+                if(flow.tasks.isEmpty()){
+                    flow.active = false;
+                }else{
+                    // turn used up, next turn at tail
+                    rounds.increment();
+                    flow.deficit += (long) flow.weight * quantum;
+                    activeFlows.offerLast(flow);
+                }
+            }
+            return null;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    private Flow getFlow(Channel channel){
+        Flow flow = channel.attr(FLOW).get();
+        if(flow == null){
+            Flow created = new Flow(1);
+            flow = channel.attr(FLOW).setIfAbsent(created);
+            if(flow == null){
+                flow = created;
+            }
+        }
+        return flow;
+    }
+
+    public int pending(){
+        lock.lock();
+        try{
+            return pending;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    public long executed(){
+        return executed.sum();
+    }
+
+    /**
+     * turns used up while the connection still had queued tasks
+     * @return long
+     */
+    public long rounds(){
+        return rounds.sum();
+    }
+
+    public long rejected(){
+        return rejected.sum();
+    }
+
+    public String statistics(){
+        return "FairScheduler{" +
+                "executed=" + executed() +
+                ", rounds=" + rounds() +
+                ", rejected=" + rejected() +
+                ", pending=" + pending() +
+                '}';
+    }
+
+    static final class Flow{
+        /**
+         * tasks and states guarded by scheduler's lock
+         */
+        private final Deque<Entry> tasks = new ArrayDeque<>();
+        private volatile int weight;
+        private long deficit;
+        private boolean active;
+
+        Flow(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    static final class Entry{
+        private final Runnable task;
+        private final Runnable onReject;
+
+        Entry(Runnable task, Runnable onReject) {
+            this.task = task;
+            this.onReject = onReject;
+        }
+    }
+}
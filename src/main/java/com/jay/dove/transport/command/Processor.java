@@ -15,7 +15,9 @@ import java.util.concurrent.ExecutorService;
  */
 public interface Processor {
     /**
-     * process a command
+     * process a command.
+     * The command's payload is released after this method returns,
+     * call {@link RemotingCommand#retainPayload()} before handing it to another thread.
      * @param context {@link ChannelHandlerContext}
      * @param msg {@link RemotingCommand}
      */
@@ -27,4 +29,22 @@ public interface Processor {
      * @param response {@link RemotingCommand}
      */
     void sendResponse(ChannelHandlerContext context, RemotingCommand response);
+
+    /**
+     * whether this processor is cheap enough to run on I/O thread, it must never block
+     * @return true to skip executors
+     */
+    default boolean runInIoThread(){
+        return false;
+    }
+
+    /**
+     * key of commands that must be processed in order, used by ordered executor.
+     * Commands of different keys may run in parallel
+     * @param command {@link RemotingCommand}
+     * @return ordering key, null to order by connection
+     */
+    default Object orderingKey(RemotingCommand command){
+        return null;
+    }
 }
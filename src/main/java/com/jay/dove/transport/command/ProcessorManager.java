@@ -1,24 +1,62 @@
 package com.jay.dove.transport.command;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * <p>
  *  Processor manager.
- *  manages Processors for each CommandCode
+ *  manages Processors for each CommandCode.
+ *  Processors are indexed by command code value, lookup doesn't hash or box.
+ *  A processor can be isolated in its own {@link Bulkhead}.
  * </p>
  *
  * @author Jay
  * @date 2022/01/08 11:11
  */
 public class ProcessorManager {
-    private final ConcurrentHashMap<CommandCode, Processor> processorMap = new ConcurrentHashMap<>(16);
+    private final AtomicReferenceArray<Processor> processors = new AtomicReferenceArray<>(1 << 16);
+    private final AtomicReferenceArray<Bulkhead> bulkheads = new AtomicReferenceArray<>(1 << 16);
 
     public void registerProcessor(CommandCode cmd, Processor processor){
-        processorMap.putIfAbsent(cmd, processor);
+        processors.compareAndSet(index(cmd), null, processor);
+    }
+
+    /**
+     * register a processor with its own executor
+     * @param cmd {@link CommandCode}
+     * @param processor {@link Processor}
+     * @param executor executor of this code
+     * @param maxPending max commands of this code queued or running
+     * @throws IllegalStateException a processor of this code is already registered
+     */
+    public void registerProcessor(CommandCode cmd, Processor processor, Executor executor, int maxPending){
+        int index = index(cmd);
+        Bulkhead bulkhead = new Bulkhead(executor, maxPending);
+        // bulkhead goes first, commands never see the processor without it
+        if(processors.get(index) != null || !bulkheads.compareAndSet(index, null, bulkhead)){
+            throw new IllegalStateException("processor already registered for command code: " + cmd.value());
+        }
+        if(!processors.compareAndSet(index, null, processor)){
+            bulkheads.compareAndSet(index, bulkhead, null);
+            throw new IllegalStateException("processor already registered for command code: " + cmd.value());
+        }
+    }
+
+    /**
+     * get bulkhead of a code
+     * @param cmd {@link CommandCode}
+     * @return {@link Bulkhead}, null if the code uses default executor
+     */
+    public Bulkhead getBulkhead(CommandCode cmd){
+        return bulkheads.get(index(cmd));
     }
 
     public Processor getProcessor(CommandCode cmd){
-        return processorMap.get(cmd);
+        return processors.get(index(cmd));
+    }
+
+    private static int index(CommandCode cmd){
+        return cmd.value() & 0xFFFF;
     }
 }
@@ -0,0 +1,159 @@
+package com.jay.dove.transport.command;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  Server read-side backpressure.
+ *  Counts commands dispatched to executor but not processed yet, per connection and in total.
+ *  A connection stops reading when its pending commands reach the connection high water mark,
+ *  all connections stop reading when total backlog reaches the global high water mark,
+ *  and reading resumes below the low water marks. Unread bytes then push back on clients through TCP.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/20 10:30
+ */
+@Slf4j
+public class ReadThrottle {
+    private static final AttributeKey<ChannelState> STATE = AttributeKey.valueOf("read-throttle-state");
+
+    private final int connectionHighWaterMark;
+    private final int connectionLowWaterMark;
+    private final int globalHighWaterMark;
+    private final int globalLowWaterMark;
+
+    /**
+     * pending commands of all connections
+     */
+    private final AtomicInteger backlog = new AtomicInteger(0);
+    /**
+     * channels that ever dispatched commands, removed on close
+     */
+    private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean globalPaused = new AtomicBoolean(false);
+
+    public ReadThrottle(int connectionHighWaterMark, int connectionLowWaterMark, int globalHighWaterMark, int globalLowWaterMark) {
+        if(connectionLowWaterMark >= connectionHighWaterMark || globalLowWaterMark >= globalHighWaterMark){
+            throw new IllegalArgumentException("low water mark must be less than high water mark");
+        }
+        this.connectionHighWaterMark = connectionHighWaterMark;
+        this.connectionLowWaterMark = connectionLowWaterMark;
+        this.globalHighWaterMark = globalHighWaterMark;
+        this.globalLowWaterMark = globalLowWaterMark;
+    }
+
+    /**
+     * commands of channel dispatched to executor
+     * @param channel {@link Channel}
+     * @param count commands count
+     */
+    public void onDispatched(Channel channel, int count){
+        ChannelState state = getState(channel);
+        state.pending.addAndGet(count);
+        backlog.addAndGet(count);
+        update(channel, state);
+    }
+
+    /**
+     * commands of channel processed, or rejected by executor
+     * @param channel {@link Channel}
+     * @param count commands count
+     */
+    public void onProcessed(Channel channel, int count){
+        ChannelState state = getState(channel);
+        state.pending.addAndGet(-count);
+        backlog.addAndGet(-count);
+        update(channel, state);
+    }
+
+    /**
+     * flip paused states by current counts.
+     * Counts are read again after each flip, a concurrent change can't leave a state that doesn't match its count
+     * @param channel {@link Channel}
+     * @param state {@link ChannelState}
+     */
+    private void update(Channel channel, ChannelState state){
+        for(;;){
+            int pending = state.pending.get();
+            if(pending >= connectionHighWaterMark && state.paused.compareAndSet(false, true)){
+                apply(channel);
+            }else if(pending <= connectionLowWaterMark && state.paused.compareAndSet(true, false)){
+                apply(channel);
+            }else{
+                break;
+            }
+        }
+        for(;;){
+            int total = backlog.get();
+            if(total >= globalHighWaterMark && globalPaused.compareAndSet(false, true)){
+                log.debug("command backlog {} reached high water mark, pause reading all connections", total);
+                channels.forEach(this::apply);
+            }else if(total <= globalLowWaterMark && globalPaused.compareAndSet(true, false)){
+                log.debug("command backlog {} below low water mark, resume reading", total);
+                channels.forEach(this::apply);
+            }else{
+                break;
+            }
+        }
+    }
+
+    public int backlog(){
+        return backlog.get();
+    }
+
+    public boolean isGlobalPaused(){
+        return globalPaused.get();
+    }
+
+    private ChannelState getState(Channel channel){
+        ChannelState state = channel.attr(STATE).get();
+        if(state == null){
+            ChannelState created = new ChannelState();
+            state = channel.attr(STATE).setIfAbsent(created);
+            if(state == null){
+                state = created;
+                channels.add(channel);
+                channel.closeFuture().addListener((ChannelFutureListener) future -> channels.remove(channel));
+                // registered after a global pause flipped the known channels
+                if(globalPaused.get()){
+                    apply(channel);
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * set autoRead from current state on channel's event loop, so the last update always wins
+     * @param channel {@link Channel}
+     */
+    private void apply(Channel channel){
+        if(channel.eventLoop().inEventLoop()){
+            setAutoRead(channel);
+        }else{
+            channel.eventLoop().execute(() -> setAutoRead(channel));
+        }
+    }
+
+    private void setAutoRead(Channel channel){
+        ChannelState state = channel.attr(STATE).get();
+        boolean autoRead = !globalPaused.get() && (state == null || !state.paused.get());
+        if(channel.config().isAutoRead() != autoRead){
+            channel.config().setAutoRead(autoRead);
+        }
+    }
+
+    static final class ChannelState{
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private final AtomicBoolean paused = new AtomicBoolean(false);
+    }
+}
@@ -2,6 +2,7 @@ package com.jay.dove.transport.command;
 
 import com.jay.dove.serialize.Serializer;
 import com.jay.dove.transport.protocol.ProtocolCode;
+import io.netty.buffer.ByteBuf;
 
 import java.io.Serializable;
 
@@ -51,4 +52,43 @@ public interface RemotingCommand extends Serializable {
     void setTimeoutMillis(long time);
 
     byte[] getContent();
+
+    /**
+     * get the reference-counted payload.
+     * Inbound payloads are retained slices of the network frame, reading them doesn't copy.
+     * Release contract:
+     * inbound requests are released after {@link Processor#process} returns, retain to keep it longer;
+     * inbound responses are owned by the consumer of {@link com.jay.dove.transport.callback.InvokeFuture};
+     * outbound payloads are released by the encoder.
+     * @return {@link ByteBuf}, null if content is held as byte[]
+     */
+    default ByteBuf getPayload(){
+        return null;
+    }
+
+    /**
+     * retain payload, does nothing if this command has no payload
+     */
+    default void retainPayload(){
+
+    }
+
+    /**
+     * release payload, does nothing if this command has no payload
+     */
+    default void releasePayload(){
+
+    }
+
+    /**
+     * nano time this command was decoded, used to measure how long it waits before processed
+     * @return long, 0 if unknown
+     */
+    default long getDecodeNanos(){
+        return 0;
+    }
+
+    default void setDecodeNanos(long decodeNanos){
+
+    }
 }
@@ -0,0 +1,176 @@
+package com.jay.dove.transport.command;
+
+import com.jay.dove.transport.connection.Connection;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *  Response batcher.
+ *  While a batch of one channel's commands is processed on a thread,
+ *  responses to that channel are collected and written when the batch ends.
+ *  If the connection's encoder supports {@link CommandBatch}, they are written as one batch,
+ *  which the encoder splits into frames under max frame length,
+ *  otherwise one by one, and flushed once.
+ *  Responses written outside a batch from other threads, e.g. by async processors,
+ *  are queued and written in batches by the channel's event loop.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/16 14:20
+ */
+public final class ResponseBatcher {
+    private static final AttributeKey<PendingResponses> PENDING = AttributeKey.valueOf("pending-responses");
+    /**
+     * max pending responses drained by one event loop task
+     */
+    private static final int MAX_DRAIN = 256;
+
+    private static final FastThreadLocal<ResponseBatcher> BATCHERS = new FastThreadLocal<ResponseBatcher>(){
+        @Override
+        protected ResponseBatcher initialValue() {
+            return new ResponseBatcher();
+        }
+    };
+
+    /**
+     * channel of the running batch, null if no batch is running on this thread
+     */
+    private Channel channel;
+    /**
+     * responses collected in the running batch
+     */
+    private final List<RemotingCommand> responses = new ArrayList<>();
+
+    private ResponseBatcher(){
+
+    }
+
+    /**
+     * begin a batch of channel on current thread
+     * @param channel {@link Channel}
+     * @return false if a batch is already running on this thread, the caller must not end it
+     */
+    public static boolean begin(Channel channel){
+        ResponseBatcher batcher = BATCHERS.get();
+        if(batcher.channel != null){
+            return false;
+        }
+        batcher.channel = channel;
+        return true;
+    }
+
+    /**
+     * end the running batch of current thread, collected responses are written
+     * @param flush flush written responses now, or leave them to the caller
+     * @return true if responses were written without flush
+     */
+    public static boolean end(boolean flush){
+        ResponseBatcher batcher = BATCHERS.get();
+        Channel channel = batcher.channel;
+        List<RemotingCommand> responses = batcher.responses;
+        batcher.channel = null;
+        if(responses.isEmpty()){
+            return false;
+        }
+        try{
+            if(responses.size() == 1){
+                channel.write(responses.get(0));
+            }else if(isBatchSupported(channel)){
+                // encoded later on event loop, pass a copy
+                channel.write(new CommandBatch(new ArrayList<>(responses)));
+            }else{
+                for (RemotingCommand response : responses) {
+                    channel.write(response);
+                }
+            }
+        }finally {
+            responses.clear();
+        }
+        if(flush){
+            channel.flush();
+        }
+        return !flush;
+    }
+
+    /**
+     * write a response, it is collected if the channel's batch is running on current thread
+     * @param channel {@link Channel}
+     * @param response response
+     */
+    public static void write(Channel channel, RemotingCommand response){
+        ResponseBatcher batcher = BATCHERS.get();
+        if(batcher.channel == channel){
+            batcher.responses.add(response);
+            return;
+        }
+        if(channel.eventLoop().inEventLoop()){
+            channel.writeAndFlush(response);
+            return;
+        }
+        getPending(channel).add(response);
+    }
+
+    private static PendingResponses getPending(Channel channel){
+        PendingResponses pending = channel.attr(PENDING).get();
+        if(pending == null){
+            PendingResponses created = new PendingResponses(channel);
+            pending = channel.attr(PENDING).setIfAbsent(created);
+            if(pending == null){
+                pending = created;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * responses written from other threads, drained by the channel's event loop
+     */
+    static final class PendingResponses implements Runnable{
+        private final Channel channel;
+        private final Queue<RemotingCommand> queue = PlatformDependent.newMpscQueue();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        PendingResponses(Channel channel) {
+            this.channel = channel;
+        }
+
+        void add(RemotingCommand response){
+            queue.offer(response);
+            if(scheduled.compareAndSet(false, true)){
+                channel.eventLoop().execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            scheduled.set(false);
+            boolean batching = begin(channel);
+            RemotingCommand response;
+            int drained = 0;
+            while(drained < MAX_DRAIN && (response = queue.poll()) != null){
+                drained++;
+                write(channel, response);
+            }
+            if(batching){
+                end(true);
+            }
+            // more responses than one drain, continue after other tasks
+            if(!queue.isEmpty() && scheduled.compareAndSet(false, true)){
+                channel.eventLoop().execute(this);
+            }
+        }
+    }
+
+    private static boolean isBatchSupported(Channel channel){
+        Connection connection = channel.attr(Connection.CONNECTION).get();
+        return connection != null && connection.isBatchSupported();
+    }
+}
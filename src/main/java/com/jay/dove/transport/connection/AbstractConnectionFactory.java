@@ -81,6 +81,12 @@ public abstract class AbstractConnectionFactory implements ConnectionFactory{
 
         // options
         bootstrap.option(ChannelOption.TCP_NODELAY, DoveConfigs.tcpNoDelay());
+        // channel becomes unwritable when pending bytes exceed max, sends are held by backpressure.
+        // Without backpressure, netty's default water marks are kept
+        if(Backpressure.Mode.of(DoveConfigs.backpressureMode()) != Backpressure.Mode.NONE){
+            int maxPendingBytes = DoveConfigs.maxPendingBytes();
+            bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(maxPendingBytes / 2, maxPendingBytes));
+        }
 
         // register handlers
         bootstrap.handler(new ChannelInitializer<NioSocketChannel>() {
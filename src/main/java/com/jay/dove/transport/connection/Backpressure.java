@@ -0,0 +1,354 @@
+package com.jay.dove.transport.connection;
+
+import com.jay.dove.util.TimerHolder;
+import io.netty.channel.Channel;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *  Client side backpressure of a connection.
+ *  A send needs the channel to be writable, pending bytes are bounded by the channel's write buffer water marks,
+ *  and a request also needs an in-flight permit, which is released when its future is removed.
+ *  When a send can't proceed, it is handled by {@link Mode}.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/19 15:10
+ */
+@Slf4j
+public class Backpressure {
+
+    public enum Mode{
+        /**
+         * no limit, sends are always written and in-flight requests are not counted
+         */
+        NONE,
+        /**
+         * caller waits until the send can proceed or its deadline passes
+         */
+        BLOCK,
+        /**
+         * send fails at once
+         */
+        FAIL_FAST,
+        /**
+         * send waits in a bounded queue, and expires if its deadline passes before it is written.
+         * Batch and micro batch sends acquire permits synchronously and fail at once like {@link #FAIL_FAST},
+         * so they never block the caller
+         */
+        QUEUE;
+
+        public static Mode of(String name){
+            for (Mode mode : values()) {
+                if(mode.name().equalsIgnoreCase(name)){
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("unknown backpressure mode: " + name);
+        }
+    }
+
+    /**
+     * max wait of one blocking round, writability changes are also checked by polling
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Channel channel;
+    private final Mode mode;
+    private final int maxInFlight;
+    private final int maxQueued;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+    private final Queue<PendingSend> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(0);
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private volatile int waiters;
+
+    private volatile boolean closed;
+
+    public Backpressure(Channel channel, Mode mode, int maxInFlight, int maxQueued) {
+        if(maxInFlight <= 0 || maxQueued < 0){
+            throw new IllegalArgumentException("illegal backpressure limits, maxInFlight: " + maxInFlight + ", maxQueued: " + maxQueued);
+        }
+        this.channel = channel;
+        this.mode = mode;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * submit a send
+     * @param request whether the send takes an in-flight permit
+     * @param deadline deadline millis of the send
+     * @param send writes the message, runs with permit acquired, on caller thread or a thread releasing permits
+     * @param reject runs if the send can't proceed
+     * @param expire runs if the deadline passes while the send waits
+     */
+    public void submit(boolean request, long deadline, Runnable send, Runnable reject, Runnable expire){
+        if(mode == Mode.NONE){
+            send.run();
+            return;
+        }
+        // queued sends go first
+        if(queued.get() == 0 && tryAcquire(request)){
+            send.run();
+            return;
+        }
+        switch (mode){
+            case QUEUE:
+                if(closed){
+                    reject.run();
+                    return;
+                }
+                if(queued.incrementAndGet() > maxQueued){
+                    queued.decrementAndGet();
+                    reject.run();
+                    return;
+                }
+                PendingSend pending = new PendingSend(request, deadline, send, reject, expire);
+                // expire the send at its deadline even if no permit is released until then
+                pending.timeout = TimerHolder.getTimer().newTimeout(t -> expire(pending),
+                        Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                queue.offer(pending);
+                // permits may be released before offer
+                drain();
+                return;
+            case BLOCK:
+                if(acquire(request, deadline)){
+                    send.run();
+                }else if(!closed && deadline <= System.currentTimeMillis()){
+                    expire.run();
+                }else{
+                    reject.run();
+                }
+                return;
+            case FAIL_FAST:
+            default:
+                reject.run();
+        }
+    }
+
+    /**
+     * acquire permit of a send synchronously, only {@link Mode#BLOCK} waits
+     * @param request whether the send takes an in-flight permit
+     * @param deadline deadline millis of the send
+     * @return false if the send can't proceed
+     */
+    public boolean acquire(boolean request, long deadline){
+        switch (mode){
+            case NONE:
+                return true;
+            case FAIL_FAST:
+            case QUEUE:
+                // the queue holds single sends, a synchronous acquire must not block like BLOCK mode
+                return tryAcquire(request);
+            default:
+                // event loop must never wait for itself
+                if(tryAcquire(request)){
+                    return true;
+                }
+                return !channel.eventLoop().inEventLoop() && await(request, deadline);
+        }
+    }
+
+    /**
+     * release an in-flight permit, called when a request's future is removed.
+     * Permits are not counted in {@link Mode#NONE}
+     */
+    public void release(){
+        if(mode == Mode.NONE){
+            return;
+        }
+        inFlight.decrementAndGet();
+        onAvailable();
+    }
+
+    /**
+     * channel writability changed, or permits released
+     */
+    public void onAvailable(){
+        if(waiters > 0){
+            lock.lock();
+            try{
+                available.signalAll();
+            }finally {
+                lock.unlock();
+            }
+        }
+        if(queued.get() > 0){
+            drain();
+        }
+    }
+
+    /**
+     * connection closed, fail queued sends and wake up waiters
+     */
+    public void close(){
+        closed = true;
+        PendingSend pending;
+        while((pending = queue.poll()) != null){
+            if(pending.claim()){
+                queued.decrementAndGet();
+                pending.reject.run();
+            }
+        }
+        onAvailable();
+    }
+
+    private boolean tryAcquire(boolean request){
+        if(closed || !channel.isWritable()){
+            return false;
+        }
+        if(!request){
+            return true;
+        }
+        for(;;){
+            int current = inFlight.get();
+            if(current >= maxInFlight){
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+
+    private boolean await(boolean request, long deadline){
+        lock.lock();
+        waiters++;
+        try{
+            for(;;){
+                if(tryAcquire(request)){
+                    return true;
+                }
+                long remaining = TimeUnit.MILLISECONDS.toNanos(deadline - System.currentTimeMillis());
+                if(closed || remaining <= 0){
+                    return false;
+                }
+                available.awaitNanos(Math.min(remaining, MAX_PARK_NANOS));
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }finally {
+            waiters--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * send queued sends while permits are available, fail expired ones
+     */
+    private void drain(){
+        while(draining.compareAndSet(false, true)){
+            try{
+                PendingSend pending;
+                while((pending = queue.peek()) != null){
+                    if(pending.isClaimed()){
+                        // expired by its timeout task
+                        queue.remove(pending);
+                    }else if(closed){
+                        queue.remove(pending);
+                        if(pending.claim()){
+                            queued.decrementAndGet();
+                            pending.reject.run();
+                        }
+                    }else if(pending.deadline <= System.currentTimeMillis()){
+                        expire(pending);
+                    }else if(tryAcquire(pending.request)){
+                        queue.remove(pending);
+                        if(pending.claim()){
+                            queued.decrementAndGet();
+                            pending.timeout.cancel();
+                            pending.send.run();
+                        }else if(pending.request){
+                            // expired after permit acquired, give it back
+                            inFlight.decrementAndGet();
+                        }
+                    }else{
+                        break;
+                    }
+                }
+            }catch (Throwable e){
+                log.error("drain backpressure queue error ", e);
+            }finally {
+                draining.set(false);
+            }
+            // sends offered or permits released while draining
+            PendingSend head = queue.peek();
+            if(head == null || (!closed && head.deadline > System.currentTimeMillis() && !canAcquire(head.request))){
+                return;
+            }
+        }
+    }
+
+    /**
+     * expire a queued send, its deadline passed before a permit was available
+     * @param pending {@link PendingSend}
+     */
+    private void expire(PendingSend pending){
+        if(pending.claim()){
+            queue.remove(pending);
+            queued.decrementAndGet();
+            pending.expire.run();
+        }
+    }
+
+    private boolean canAcquire(boolean request){
+        return !closed && channel.isWritable() && (!request || inFlight.get() < maxInFlight);
+    }
+
+    public int inFlight(){
+        return inFlight.get();
+    }
+
+    public int queued(){
+        return queued.get();
+    }
+
+    public Mode getMode(){
+        return mode;
+    }
+
+    static final class PendingSend{
+        private final boolean request;
+        private final long deadline;
+        private final Runnable send;
+        private final Runnable reject;
+        private final Runnable expire;
+        /**
+         * set once the send is written, rejected or expired
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private volatile Timeout timeout;
+
+        PendingSend(boolean request, long deadline, Runnable send, Runnable reject, Runnable expire) {
+            this.request = request;
+            this.deadline = deadline;
+            this.send = send;
+            this.reject = reject;
+            this.expire = expire;
+        }
+
+        boolean claim(){
+            return claimed.compareAndSet(false, true);
+        }
+
+        boolean isClaimed(){
+            return claimed.get();
+        }
+    }
+}
@@ -52,6 +52,16 @@ public class ConnectEventHandler extends ChannelDuplexHandler {
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        Connection connection = ctx.channel().attr(Connection.CONNECTION).get();
+        if(connection != null && ctx.channel().isWritable()){
+            // resume sends waiting for pending bytes to drain
+            connection.getBackpressure().onAvailable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         if(log.isDebugEnabled()){
@@ -1,20 +1,21 @@
 package com.jay.dove.transport.connection;
 
+import com.jay.dove.config.DoveConfigs;
 import com.jay.dove.transport.Url;
 import com.jay.dove.transport.callback.InvokeFuture;
 import com.jay.dove.transport.command.RemotingCommand;
 import com.jay.dove.transport.protocol.Protocol;
 import com.jay.dove.transport.protocol.ProtocolCode;
+import com.jay.dove.transport.protocol.ProtocolM2mEncoder;
 import com.jay.dove.transport.protocol.ProtocolManager;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * <p>
@@ -32,10 +33,11 @@ public class Connection {
     private final Channel channel;
 
     /**
-     * future map.
-     * This holds futures from async send
+     * in-flight table.
+     * This holds futures from async send, created on first send
      */
-    private final ConcurrentHashMap<Integer, InvokeFuture> invokeFutureMap = new ConcurrentHashMap<>(256);
+    private volatile InFlightTable inFlightTable;
+    private static final AtomicReferenceFieldUpdater<Connection, InFlightTable> IN_FLIGHT_TABLE = AtomicReferenceFieldUpdater.newUpdater(Connection.class, InFlightTable.class, "inFlightTable");
 
     public static final AttributeKey<Connection> CONNECTION = AttributeKey.valueOf("connection");
 
@@ -50,11 +52,28 @@ public class Connection {
      */
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
+    /**
+     * write coalescer, null if writes are flushed one by one
+     */
+    private volatile WriteCoalescer writeCoalescer;
+
+    /**
+     * backpressure of sends
+     */
+    private final Backpressure backpressure;
+
+    /**
+     * whether protocol encoder of this connection supports batch frames, null before checked
+     */
+    private Boolean batchSupported;
+
     public Connection (Channel channel, Url url){
         this.channel = channel;
         this.url = url;
         this.poolKey = url.getPoolKey();
         channel.attr(CONNECTION).set(this);
+        this.backpressure = newBackpressure(channel);
+        initWriteCoalescing();
     }
 
     public Connection(Channel channel, ProtocolCode protocolCode, Url url) {
@@ -64,6 +83,61 @@ public class Connection {
         // associate channel with this connection
         channel.attr(CONNECTION).set(this);
         channel.attr(PROTOCOL).set(protocolCode);
+        this.backpressure = newBackpressure(channel);
+        initWriteCoalescing();
+    }
+
+    private static Backpressure newBackpressure(Channel channel){
+        return new Backpressure(channel, Backpressure.Mode.of(DoveConfigs.backpressureMode()),
+                DoveConfigs.maxInFlight(), DoveConfigs.backpressureQueueSize());
+    }
+
+    private void initWriteCoalescing(){
+        if(DoveConfigs.writeCoalescing()){
+            enableWriteCoalescing(DoveConfigs.writeCoalescingMaxBatch(), DoveConfigs.writeCoalescingMaxDelay());
+        }
+    }
+
+    /**
+     * coalesce writes of this connection, writes are flushed in batches by event loop
+     * @param maxBatch max writes flushed at once
+     * @param maxDelayMicros max time a write waits for its batch, microseconds
+     */
+    public void enableWriteCoalescing(int maxBatch, long maxDelayMicros){
+        this.writeCoalescer = new WriteCoalescer(channel, maxBatch, maxDelayMicros);
+    }
+
+    /**
+     * write and flush a message.
+     * If write coalescing is enabled, the flush is shared with other writes of the same batch.
+     * @param msg message
+     * @return {@link ChannelFuture}
+     */
+    public ChannelFuture write(Object msg){
+        WriteCoalescer coalescer = this.writeCoalescer;
+        if(coalescer != null){
+            return coalescer.write(msg);
+        }
+        return channel.writeAndFlush(msg);
+    }
+
+    /**
+     * check if the protocol encoder of this connection can encode {@link com.jay.dove.transport.command.CommandBatch}
+     * @return boolean
+     */
+    public boolean isBatchSupported(){
+        Boolean supported = batchSupported;
+        if(supported == null){
+            Protocol protocol = ProtocolManager.getProtocol(channel.attr(PROTOCOL).get());
+            if(protocol == null){
+                // protocol not resolved yet
+                return false;
+            }
+            ProtocolM2mEncoder m2mEncoder = protocol.getM2mEncoder();
+            supported = protocol.getEncoder().isBatchSupported() && (m2mEncoder == null || m2mEncoder.isBatchSupported());
+            batchSupported = supported;
+        }
+        return supported;
     }
 
     public boolean isClosed(){
@@ -89,23 +163,20 @@ public class Connection {
      * Connection closed callback
      */
     public void onClose(){
-        Iterator<Map.Entry<Integer, InvokeFuture>> iterator = invokeFutureMap.entrySet().iterator();
-        while(iterator.hasNext()){
-            Map.Entry<Integer, InvokeFuture> entry = iterator.next();
-            iterator.remove();
-            InvokeFuture future = entry.getValue();
-            if(future != null){
-                ProtocolCode code = channel.attr(PROTOCOL).get();
-                Protocol protocol = ProtocolManager.getProtocol(code);
-                // put connection closed response
-                future.putResponse(protocol.getCommandFactory().createExceptionResponse(entry.getKey(), "connection closed"));
-            }
+        InFlightTable table = this.inFlightTable;
+        if(table != null){
+            ProtocolCode code = channel.attr(PROTOCOL).get();
+            Protocol protocol = ProtocolManager.getProtocol(code);
+            // put connection closed response
+            table.removeAll((id, future) -> future.putResponse(protocol.getCommandFactory().createExceptionResponse(id, "connection closed")));
         }
+        backpressure.close();
         this.closed.set(true);
     }
 
     public void putResponse(RemotingCommand response){
-        InvokeFuture invokeFuture = invokeFutureMap.get(response.getId());
+        InFlightTable table = this.inFlightTable;
+        InvokeFuture invokeFuture = table == null ? null : table.get(response.getId());
         if(invokeFuture != null){
             invokeFuture.putResponse(response);
         }
@@ -116,11 +187,31 @@ public class Connection {
     }
 
     public void addInvokeFuture(int id, InvokeFuture future){
-        invokeFutureMap.put(id, future);
+        getInFlightTable().put(id, future);
+    }
+
+    public InvokeFuture removeInvokeFuture(int id){
+        InFlightTable table = this.inFlightTable;
+        InvokeFuture future = table == null ? null : table.remove(id);
+        if(future != null){
+            backpressure.release();
+        }
+        return future;
+    }
+
+    private InFlightTable getInFlightTable(){
+        InFlightTable table = this.inFlightTable;
+        if(table == null){
+            // server side connections never send requests, table is created on first send.
+            // CAS instead of lock, senders may be virtual threads
+            IN_FLIGHT_TABLE.compareAndSet(this, null, new InFlightTable(DoveConfigs.maxInFlight()));
+            table = this.inFlightTable;
+        }
+        return table;
     }
 
-    public InvokeFuture removeInvokeFuture(Integer id){
-        return invokeFutureMap.remove(id);
+    public Backpressure getBackpressure(){
+        return backpressure;
     }
 
     public String getPoolKey() {
@@ -0,0 +1,121 @@
+package com.jay.dove.transport.connection;
+
+import com.jay.dove.transport.callback.InvokeFuture;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ *  In-flight request table of a connection, keyed by primitive int request id.
+ *  Each id maps to the slot (id & mask), a slot is claimed by CAS and freed by CAS,
+ *  so put and remove are lock-free and allocate nothing.
+ *  Ids whose slot is taken by another in-flight request go to an overflow map,
+ *  which stays empty while in-flight requests fit the table and ids are sequential.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/18 10:15
+ */
+public class InFlightTable {
+    /**
+     * marks a slot claimed by a put in progress
+     */
+    private static final Object CLAIMED = new Object();
+
+    private final int mask;
+    /**
+     * slots of futures, null if free
+     */
+    private final AtomicReferenceArray<Object> slots;
+    /**
+     * id of the future in each slot, written before the future is published
+     */
+    private final AtomicIntegerArray ids;
+    /**
+     * futures whose slot was taken
+     */
+    private final ConcurrentHashMap<Integer, InvokeFuture> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * create a table
+     * @param capacity expected max in-flight requests, rounded up to power of 2
+     */
+    public InFlightTable(int capacity){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.ids = new AtomicIntegerArray(size);
+    }
+
+    public void put(int id, InvokeFuture future){
+        int index = id & mask;
+        if(slots.compareAndSet(index, null, CLAIMED)){
+            ids.set(index, id);
+            // publish after id
+            slots.set(index, future);
+        }else{
+            overflow.put(id, future);
+        }
+    }
+
+    public InvokeFuture get(int id){
+        int index = id & mask;
+        Object slot = slots.get(index);
+        if(slot != null && slot != CLAIMED && ids.get(index) == id){
+            return (InvokeFuture) slot;
+        }
+        return overflow.isEmpty() ? null : overflow.get(id);
+    }
+
+    public InvokeFuture remove(int id){
+        int index = id & mask;
+        Object slot = slots.get(index);
+        // CAS on the future itself fails if the slot was freed and reused after reading id
+        if(slot != null && slot != CLAIMED && ids.get(index) == id && slots.compareAndSet(index, slot, null)){
+            return (InvokeFuture) slot;
+        }
+        return overflow.isEmpty() ? null : overflow.remove(id);
+    }
+
+    /**
+     * remove all futures
+     * @param consumer consumer of removed id and future
+     */
+    public void removeAll(BiConsumer<Integer, InvokeFuture> consumer){
+        for(int i = 0; i < slots.length(); i++){
+            Object slot = slots.get(i);
+            if(slot != null && slot != CLAIMED){
+                int id = ids.get(i);
+                if(slots.compareAndSet(i, slot, null)){
+                    consumer.accept(id, (InvokeFuture) slot);
+                }
+            }
+        }
+        Iterator<Map.Entry<Integer, InvokeFuture>> iterator = overflow.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<Integer, InvokeFuture> entry = iterator.next();
+            iterator.remove();
+            consumer.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * number of futures in overflow map
+     * @return int
+     */
+    public int overflowSize(){
+        return overflow.size();
+    }
+
+    public int capacity(){
+        return mask + 1;
+    }
+}
@@ -0,0 +1,130 @@
+package com.jay.dove.transport.connection;
+
+import com.jay.dove.transport.command.RemotingCommand;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  Write coalescer of a channel.
+ *  Writes from caller threads are put into a lock-free queue,
+ *  the event loop drains them in batches and flushes once per batch.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/16 10:05
+ */
+public class WriteCoalescer implements Runnable {
+    private final Channel channel;
+    /**
+     * max writes drained before one flush
+     */
+    private final int maxBatch;
+    /**
+     * max time a write waits for others to join its batch, 0 means drain as soon as possible
+     */
+    private final long maxDelayNanos;
+
+    private final Queue<PendingWrite> queue = PlatformDependent.newMpscQueue();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    /**
+     * whether a drain task is scheduled on the event loop
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public WriteCoalescer(Channel channel, int maxBatch, long maxDelayMicros) {
+        if(maxBatch <= 0){
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+    }
+
+    /**
+     * queue a write, it will be flushed with the current batch
+     * @param msg message
+     * @return {@link ChannelFuture} write result
+     */
+    public ChannelFuture write(Object msg){
+        ChannelPromise promise = channel.newPromise();
+        queue.offer(new PendingWrite(msg, promise));
+        int size = pending.incrementAndGet();
+        try{
+            if(scheduled.compareAndSet(false, true)){
+                if(maxDelayNanos > 0 && size < maxBatch){
+                    // wait for more writes within latency budget
+                    channel.eventLoop().schedule(this, maxDelayNanos, TimeUnit.NANOSECONDS);
+                }else{
+                    channel.eventLoop().execute(this);
+                }
+            }else if(size == maxBatch && maxDelayNanos > 0){
+                // batch full, don't wait for the delayed drain
+                channel.eventLoop().execute(this);
+            }
+        }catch (RejectedExecutionException e){
+            // event loop shut down
+            failAll(e);
+        }
+        return promise;
+    }
+
+    /**
+     * drain one batch, runs on event loop
+     */
+    @Override
+    public void run() {
+        scheduled.set(false);
+        int written = 0;
+        PendingWrite write;
+        while(written < maxBatch && (write = queue.poll()) != null){
+            channel.write(write.msg, write.promise);
+            written++;
+        }
+        if(written > 0){
+            pending.addAndGet(-written);
+            channel.flush();
+        }
+        // more writes than one batch, drain again after other tasks
+        if(!queue.isEmpty() && scheduled.compareAndSet(false, true)){
+            channel.eventLoop().execute(this);
+        }
+    }
+
+    private void failAll(Throwable cause){
+        PendingWrite write;
+        while((write = queue.poll()) != null){
+            pending.decrementAndGet();
+            if(write.msg instanceof RemotingCommand){
+                ((RemotingCommand) write.msg).releasePayload();
+            }
+            write.promise.tryFailure(cause);
+        }
+    }
+
+    /**
+     * number of writes waiting in queue
+     * @return int
+     */
+    public int pendingWrites(){
+        return pending.get();
+    }
+
+    static final class PendingWrite{
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.jay.dove.transport.limit;
+
+import com.jay.dove.transport.command.CommandCode;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ *  Server side concurrency limiter of each CommandCode.
+ *  A command is admitted if in-flight commands of its code are below the code's {@link Limit},
+ *  otherwise it should be shed before any work is spent on it.
+ *  Admitted commands report their latency on release, the limit follows the latency.
+ *  Limits are indexed by command code value like processors.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/21 11:00
+ */
+public class ConcurrencyLimiter {
+    public static final String VEGAS = "vegas";
+    public static final String GRADIENT = "gradient";
+
+    private final AtomicReferenceArray<CodeLimiter> limiters = new AtomicReferenceArray<>(1 << 16);
+    private final Supplier<Limit> limitFactory;
+
+    public ConcurrencyLimiter(Supplier<Limit> limitFactory) {
+        this.limitFactory = limitFactory;
+    }
+
+    /**
+     * create a limiter of named algorithm
+     * @param algorithm {@link #VEGAS} or {@link #GRADIENT}
+     * @param initialLimit initial limit of each code
+     * @param minLimit min limit
+     * @param maxLimit max limit
+     * @return {@link ConcurrencyLimiter}
+     */
+    public static ConcurrencyLimiter of(String algorithm, int initialLimit, int minLimit, int maxLimit){
+        if(minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit){
+            throw new IllegalArgumentException("illegal limits, initial: " + initialLimit + ", min: " + minLimit + ", max: " + maxLimit);
+        }
+        if(VEGAS.equalsIgnoreCase(algorithm)){
+            return new ConcurrencyLimiter(()->new VegasLimit(initialLimit, minLimit, maxLimit));
+        }else if(GRADIENT.equalsIgnoreCase(algorithm)){
+            return new ConcurrencyLimiter(()->new GradientLimit(initialLimit, minLimit, maxLimit));
+        }
+        throw new IllegalArgumentException("unknown concurrency limit algorithm: " + algorithm);
+    }
+
+    /**
+     * try to admit a command
+     * @param code {@link CommandCode}
+     * @return false if the command should be shed
+     */
+    public boolean tryAcquire(CommandCode code){
+        CodeLimiter limiter = getLimiter(code);
+        AtomicInteger inFlight = limiter.inFlight;
+        for(;;){
+            int current = inFlight.get();
+            if(current >= limiter.limit.getLimit()){
+                limiter.rejected.incrementAndGet();
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * an admitted command finished
+     * @param code {@link CommandCode}
+     * @param rttNanos time from admission to processed
+     * @param dropped whether the command was dropped instead of processed
+     */
+    public void release(CommandCode code, long rttNanos, boolean dropped){
+        CodeLimiter limiter = getLimiter(code);
+        int inFlight = limiter.inFlight.getAndDecrement();
+        // samples arriving while another thread updates the limit are skipped
+        if(limiter.updating.compareAndSet(false, true)){
+            try{
+                limiter.limit.onSample(rttNanos, inFlight, dropped);
+            }finally {
+                limiter.updating.set(false);
+            }
+        }
+    }
+
+    /**
+     * current limit of a code
+     * @param code {@link CommandCode}
+     * @return int
+     */
+    public int getLimit(CommandCode code){
+        return getLimiter(code).limit.getLimit();
+    }
+
+    public int getInFlight(CommandCode code){
+        return getLimiter(code).inFlight.get();
+    }
+
+    /**
+     * commands of a code shed by the limiter
+     * @param code {@link CommandCode}
+     * @return long
+     */
+    public long getRejected(CommandCode code){
+        return getLimiter(code).rejected.get();
+    }
+
+    private CodeLimiter getLimiter(CommandCode code){
+        int index = code.value() & 0xFFFF;
+        CodeLimiter limiter = limiters.get(index);
+        if(limiter == null){
+            limiters.compareAndSet(index, null, new CodeLimiter(limitFactory.get()));
+            limiter = limiters.get(index);
+        }
+        return limiter;
+    }
+
+    static final class CodeLimiter{
+        private final Limit limit;
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private final AtomicBoolean updating = new AtomicBoolean(false);
+        private final AtomicLong rejected = new AtomicLong(0);
+
+        CodeLimiter(Limit limit) {
+            this.limit = limit;
+        }
+    }
+}
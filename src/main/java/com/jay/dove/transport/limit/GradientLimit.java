@@ -0,0 +1,74 @@
+package com.jay.dove.transport.limit;
+
+/**
+ * <p>
+ *  Gradient limit.
+ *  The gradient minRtt / rtt scales the limit down when latency grows past the tolerance,
+ *  and a queue allowance of sqrt(limit) lets it grow when latency is stable.
+ *  The min rtt is reset periodically under low load, so it follows changes of the no-load latency.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/21 10:40
+ */
+public class GradientLimit implements Limit {
+    /**
+     * latency growth tolerated before the limit shrinks
+     */
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    /**
+     * min samples between two min rtt resets
+     */
+    private static final int PROBE_INTERVAL = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile int limit;
+
+    private double estimatedLimit;
+    private long minRtt = Long.MAX_VALUE;
+    private int samples;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        // probe no-load latency again, only under low load,
+        // resetting under overload would take the queued latency as the new baseline
+        if(++samples >= PROBE_INTERVAL && inFlight * 2 < estimatedLimit){
+            samples = 0;
+            minRtt = Long.MAX_VALUE;
+        }
+        if(rttNanos <= 0){
+            return;
+        }
+        if(rttNanos < minRtt){
+            minRtt = rttNanos;
+        }
+        // not limited by the limit, don't grow
+        if(!dropped && inFlight * 2 < estimatedLimit){
+            return;
+        }
+        double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, TOLERANCE * minRtt / rttNanos));
+        double next = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        next = estimatedLimit * (1 - SMOOTHING) + next * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, next));
+        limit = (int) estimatedLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "GradientLimit{limit=" + limit + ", minRtt=" + minRtt + "}";
+    }
+}
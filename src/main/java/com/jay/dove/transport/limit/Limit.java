@@ -0,0 +1,26 @@
+package com.jay.dove.transport.limit;
+
+/**
+ * <p>
+ *  Adaptive concurrency limit algorithm.
+ *  Limit is adjusted from processing latency samples, samples are delivered one at a time.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/21 10:10
+ */
+public interface Limit {
+    /**
+     * current concurrency limit
+     * @return int
+     */
+    int getLimit();
+
+    /**
+     * a command finished
+     * @param rttNanos time from admission to processed, nanos
+     * @param inFlight commands in flight when the sample was taken
+     * @param dropped whether the command was dropped, e.g. expired in queue
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,187 @@
+package com.jay.dove.transport.limit;
+
+import com.jay.dove.transport.command.CommandCode;
+import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.transport.connection.Connection;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *  Server side rate limiter.
+ *  A command takes a permit from the bucket of its CommandCode, its connection and its remote address,
+ *  it is rejected if any of them is empty. Buckets are {@link TokenBucket}s, limiting a command is lock-free.
+ *  Connection and address buckets are kept in channel attributes, address buckets are shared by connections of one address
+ *  and removed when the last one closes.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/27 10:40
+ */
+public class RateLimiter {
+    private static final AttributeKey<ChannelBuckets> BUCKETS = AttributeKey.valueOf("rate-limit-buckets");
+
+    private final AtomicReferenceArray<TokenBucket> codeBuckets = new AtomicReferenceArray<>(1 << 16);
+
+    private final double connectionRate;
+    private final int connectionBurst;
+    private final double addressRate;
+    private final int addressBurst;
+    private final Map<String, AddressBucket> addressBuckets = new ConcurrentHashMap<>();
+
+    private final LongAdder codeRejected = new LongAdder();
+    private final LongAdder connectionRejected = new LongAdder();
+    private final LongAdder addressRejected = new LongAdder();
+
+    /**
+     * create a rate limiter
+     * @param connectionRate permits per second of each connection, 0 for no limit
+     * @param connectionBurst burst permits of each connection
+     * @param addressRate permits per second of each remote address, 0 for no limit
+     * @param addressBurst burst permits of each remote address
+     */
+    public RateLimiter(double connectionRate, int connectionBurst, double addressRate, int addressBurst) {
+        this.connectionRate = connectionRate;
+        this.connectionBurst = connectionBurst;
+        this.addressRate = addressRate;
+        this.addressBurst = addressBurst;
+    }
+
+    /**
+     * limit a CommandCode of all connections
+     * @param code {@link CommandCode}
+     * @param permitsPerSecond permits per second
+     * @param burst burst permits
+     */
+    public void setCommandCodeLimit(CommandCode code, double permitsPerSecond, int burst){
+        codeBuckets.set(code.value() & 0xFFFF, new TokenBucket(permitsPerSecond, burst));
+    }
+
+    /**
+     * take permits of a command, called by channel's I/O thread
+     * @param channel {@link Channel}
+     * @param command {@link RemotingCommand}
+     * @param now {@link System#nanoTime()}
+     * @return false if the command exceeds any limit
+     */
+    public boolean tryAcquire(Channel channel, RemotingCommand command, long now){
+        TokenBucket codeBucket = codeBuckets.get(command.getCommandCode().value() & 0xFFFF);
+        if(codeBucket != null && !codeBucket.tryAcquire(now)){
+            codeRejected.increment();
+            return false;
+        }
+        ChannelBuckets buckets = getBuckets(channel);
+        if(buckets.connection != null && !buckets.connection.tryAcquire(now)){
+            connectionRejected.increment();
+            refund(codeBucket);
+            return false;
+        }
+        if(buckets.address != null && !buckets.address.bucket.tryAcquire(now)){
+            addressRejected.increment();
+            refund(codeBucket);
+            refund(buckets.connection);
+            return false;
+        }
+        return true;
+    }
+
+    private static void refund(TokenBucket bucket){
+        if(bucket != null){
+            bucket.refund();
+        }
+    }
+
+    private ChannelBuckets getBuckets(Channel channel){
+        ChannelBuckets buckets = channel.attr(BUCKETS).get();
+        if(buckets == null){
+            TokenBucket connection = connectionRate > 0 ? new TokenBucket(connectionRate, connectionBurst) : null;
+            AddressBucket address = addressRate > 0 ? retainAddress(remoteAddress(channel)) : null;
+            buckets = new ChannelBuckets(connection, address);
+            channel.attr(BUCKETS).set(buckets);
+            if(address != null){
+                channel.closeFuture().addListener((ChannelFutureListener) future -> releaseAddress(address));
+            }
+        }
+        return buckets;
+    }
+
+    private AddressBucket retainAddress(String address){
+        // compute only on new connections, never on commands
+        return addressBuckets.compute(address, (key, bucket)->{
+            if(bucket == null){
+                bucket = new AddressBucket(key, new TokenBucket(addressRate, addressBurst));
+            }
+            bucket.connections++;
+            return bucket;
+        });
+    }
+
+    private void releaseAddress(AddressBucket address){
+        addressBuckets.computeIfPresent(address.address, (key, bucket)-> --bucket.connections == 0 ? null : bucket);
+    }
+
+    private static String remoteAddress(Channel channel){
+        Connection connection = channel.attr(Connection.CONNECTION).get();
+        if(connection != null && connection.getUrl() != null && connection.getUrl().getIp() != null){
+            return connection.getUrl().getIp();
+        }
+        SocketAddress address = channel.remoteAddress();
+        if(address instanceof InetSocketAddress){
+            return ((InetSocketAddress) address).getHostString();
+        }
+        return String.valueOf(address);
+    }
+
+    public long codeRejected(){
+        return codeRejected.sum();
+    }
+
+    public long connectionRejected(){
+        return connectionRejected.sum();
+    }
+
+    public long addressRejected(){
+        return addressRejected.sum();
+    }
+
+    public String statistics(){
+        return "RateLimiter{" +
+                "codeRejected=" + codeRejected() +
+                ", connectionRejected=" + connectionRejected() +
+                ", addressRejected=" + addressRejected() +
+                ", addresses=" + addressBuckets.size() +
+                '}';
+    }
+
+    static final class ChannelBuckets{
+        private final TokenBucket connection;
+        private final AddressBucket address;
+
+        ChannelBuckets(TokenBucket connection, AddressBucket address) {
+            this.connection = connection;
+            this.address = address;
+        }
+    }
+
+    static final class AddressBucket{
+        private final String address;
+        private final TokenBucket bucket;
+        /**
+         * open connections of this address, guarded by map's compute
+         */
+        private int connections;
+
+        AddressBucket(String address, TokenBucket bucket) {
+            this.address = address;
+            this.bucket = bucket;
+        }
+    }
+}
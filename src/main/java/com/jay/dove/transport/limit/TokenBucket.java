@@ -0,0 +1,60 @@
+package com.jay.dove.transport.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *  Lock-free token bucket.
+ *  Implemented as generic cell rate algorithm, the only state is the theoretical arrival time of next permit,
+ *  a permit is taken with one CAS, no refill task or lock is needed.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/27 10:10
+ */
+public final class TokenBucket {
+    /**
+     * nanos of one permit
+     */
+    private final long intervalNanos;
+    /**
+     * how far arrival time can run ahead of now, burst permits
+     */
+    private final long burstNanos;
+    private final AtomicLong arrivalTime;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if(permitsPerSecond <= 0 || burst <= 0){
+            throw new IllegalArgumentException("illegal token bucket, rate: " + permitsPerSecond + ", burst: " + burst);
+        }
+        this.intervalNanos = Math.max(1, (long)(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.arrivalTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * take a permit
+     * @param now {@link System#nanoTime()}
+     * @return false if no permit left
+     */
+    public boolean tryAcquire(long now){
+        for(;;){
+            long current = arrivalTime.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            if(next - now > burstNanos){
+                return false;
+            }
+            if(arrivalTime.compareAndSet(current, next)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * give back a permit taken by {@link #tryAcquire(long)}
+     */
+    public void refund(){
+        arrivalTime.addAndGet(-intervalNanos);
+    }
+}
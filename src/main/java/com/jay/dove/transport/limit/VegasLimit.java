@@ -0,0 +1,75 @@
+package com.jay.dove.transport.limit;
+
+/**
+ * <p>
+ *  TCP Vegas style limit.
+ *  Queue size is estimated as limit * (1 - minRtt / rtt), the limit grows while the queue is small,
+ *  shrinks when the queue is large or commands are dropped.
+ *  The min rtt is reset periodically under low load, so it follows changes of the no-load latency.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/21 10:20
+ */
+public class VegasLimit implements Limit {
+    /**
+     * min samples between two min rtt resets
+     */
+    private static final int PROBE_INTERVAL = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile int limit;
+
+    private long minRtt = Long.MAX_VALUE;
+    private int samples;
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        int current = limit;
+        // probe no-load latency again, only under low load,
+        // resetting under overload would take the queued latency as the new baseline
+        if(++samples >= PROBE_INTERVAL && inFlight * 2 < current){
+            samples = 0;
+            minRtt = Long.MAX_VALUE;
+        }
+        if(rttNanos <= 0){
+            return;
+        }
+        if(rttNanos < minRtt){
+            minRtt = rttNanos;
+        }
+        double log = Math.max(1, Math.log10(current));
+        int next;
+        if(dropped){
+            next = (int)(current - log);
+        }else{
+            int queue = (int)Math.ceil(current * (1 - (double) minRtt / rttNanos));
+            if(queue <= 3 * log){
+                // not limited by the limit, don't grow
+                next = inFlight * 2 < current ? current : (int)(current + log);
+            }else if(queue >= 6 * log){
+                next = (int)(current - log);
+            }else{
+                next = current;
+            }
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    @Override
+    public String toString() {
+        return "VegasLimit{limit=" + limit + ", minRtt=" + minRtt + "}";
+    }
+}
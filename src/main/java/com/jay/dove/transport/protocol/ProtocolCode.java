@@ -1,7 +1,5 @@
 package com.jay.dove.transport.protocol;
 
-import java.util.Objects;
-
 /**
  * <p>
  *  Protocol code. Identification for custom protocols
@@ -11,14 +9,29 @@ import java.util.Objects;
  * @date 2021/12/31 14:10
  */
 public class ProtocolCode {
+    /**
+     * interned codes, indexed by code + 128
+     */
+    private static final ProtocolCode[] CODES = new ProtocolCode[256];
+    static{
+        for(int i = 0; i < CODES.length; i++){
+            CODES[i] = new ProtocolCode((byte)(i - 128));
+        }
+    }
+
     private final byte code;
 
     private ProtocolCode(byte code) {
         this.code = code;
     }
 
+    /**
+     * get the interned ProtocolCode, this method doesn't allocate
+     * @param code byte code
+     * @return {@link ProtocolCode}
+     */
     public static ProtocolCode fromValue(byte code){
-        return new ProtocolCode(code);
+        return CODES[code + 128];
     }
 
 
@@ -40,7 +53,7 @@ public class ProtocolCode {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(code);
+        return code;
     }
 
     @Override
@@ -21,4 +21,16 @@ public interface ProtocolDecoder {
      * @param out out
      */
     void decode(ChannelHandlerContext context, ByteBuf in, List<Object> out);
+
+    /**
+     * peek the total length of the frame at reader index, protocol code included.
+     * This method must not move the reader index.
+     * Returning a length lets the batch decoder wait for the whole frame instead of calling
+     * {@link #decode(ChannelHandlerContext, ByteBuf, List)} on every read.
+     * @param in in
+     * @return frame length, -1 if unknown or the length field is not readable yet
+     */
+    default int frameLength(ByteBuf in){
+        return -1;
+    }
 }
@@ -19,4 +19,22 @@ public interface ProtocolEncoder {
      * @param out out
      */
     void encode(ChannelHandlerContext context, Object object, ByteBuf out);
+
+    /**
+     * exact or estimated number of bytes {@link #encode(ChannelHandlerContext, Object, ByteBuf)} writes.
+     * The output buffer is allocated with this size up front, avoiding expansion while encoding.
+     * @param object object
+     * @return encoded size, -1 if unknown
+     */
+    default int encodedSize(Object object){
+        return -1;
+    }
+
+    /**
+     * whether this encoder can encode a {@link com.jay.dove.transport.command.CommandBatch} into one frame
+     * @return boolean
+     */
+    default boolean isBatchSupported(){
+        return false;
+    }
 }
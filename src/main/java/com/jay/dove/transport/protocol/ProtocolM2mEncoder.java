@@ -20,4 +20,12 @@ public interface ProtocolM2mEncoder {
      * @param out {@link List<Object>} output objects like {@link io.netty.buffer.ByteBuf} {@link io.netty.channel.FileRegion}
      */
     void encode(ChannelHandlerContext context, Object o, List<Object> out);
+
+    /**
+     * whether this encoder can encode a {@link com.jay.dove.transport.command.CommandBatch} into one frame
+     * @return boolean
+     */
+    default boolean isBatchSupported(){
+        return false;
+    }
 }
@@ -1,26 +1,27 @@
 package com.jay.dove.transport.protocol;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * <p>
  *  Protocol manager.
- *  contains all custom protocols.
+ *  contains all custom protocols, indexed by protocol code.
  * </p>
  *
  * @author Jay
  * @date 2021/12/31 14:15
  */
 public class ProtocolManager {
-    private static final ConcurrentHashMap<ProtocolCode, Protocol> PROTOCOLS = new ConcurrentHashMap<>(16);
+    private static final Protocol[] PROTOCOLS = new Protocol[256];
 
     /**
      * register a custom protocol to ProtocolManager
      * @param protocolCode {@link ProtocolCode} code
      * @param protocol {@link Protocol} protocol
      */
-    public static void registerProtocol(ProtocolCode protocolCode, Protocol protocol){
-        PROTOCOLS.putIfAbsent(protocolCode, protocol);
+    public static synchronized void registerProtocol(ProtocolCode protocolCode, Protocol protocol){
+        int index = protocolCode.value() + 128;
+        if(PROTOCOLS[index] == null){
+            PROTOCOLS[index] = protocol;
+        }
     }
 
     /**
@@ -29,6 +30,15 @@ public class ProtocolManager {
      * @return {@link Protocol}
      */
     public static Protocol getProtocol(ProtocolCode protocolCode){
-        return PROTOCOLS.get(protocolCode);
+        return protocolCode == null ? null : PROTOCOLS[protocolCode.value() + 128];
+    }
+
+    /**
+     * get a registered custom protocol from Manager
+     * @param code protocol code value
+     * @return {@link Protocol}
+     */
+    public static Protocol getProtocol(byte code){
+        return PROTOCOLS[code + 128];
     }
 }
@@ -0,0 +1,43 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.codec.AbstractBatchDecoder;
+import com.jay.dove.transport.codec.Codec;
+import com.jay.dove.transport.codec.ProtocolCodeBasedDecoder;
+import com.jay.dove.transport.codec.ProtocolCodeBasedEncoder;
+import io.netty.channel.ChannelHandler;
+
+/**
+ * <p>
+ *  Codec of the RPC protocol.
+ *  Decoders use {@link AbstractBatchDecoder#MERGE_ACCUMULATOR} by default,
+ *  large-frame workloads can pass {@link AbstractBatchDecoder#COMPOSITE_ACCUMULATOR} instead.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 11:58
+ */
+public class RpcCodec implements Codec {
+    private final AbstractBatchDecoder.Accumulator accumulator;
+
+    public RpcCodec() {
+        this(AbstractBatchDecoder.MERGE_ACCUMULATOR);
+    }
+
+    /**
+     * create a codec whose decoders use the accumulator
+     * @param accumulator {@link AbstractBatchDecoder.Accumulator}
+     */
+    public RpcCodec(AbstractBatchDecoder.Accumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    @Override
+    public ChannelHandler newDecoder() {
+        return new ProtocolCodeBasedDecoder(accumulator);
+    }
+
+    @Override
+    public ChannelHandler newEncoder() {
+        return new ProtocolCodeBasedEncoder(RpcProtocol.CODE);
+    }
+}
@@ -0,0 +1,187 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.compress.Compressor;
+import com.jay.dove.compress.CompressorManager;
+import com.jay.dove.transport.command.CommandCode;
+import com.jay.dove.transport.command.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * <p>
+ *  Remoting command of the RPC protocol.
+ *  Content is held either as byte[] or as a reference-counted payload,
+ *  {@link #getContent()} copies the payload on first call.
+ *  Compressed content is kept as it is on the wire, {@link #getContent()} decompresses it on first call.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 10:31
+ */
+public class RpcCommand implements RemotingCommand {
+    private static final long serialVersionUID = 1L;
+
+    static final byte[] EMPTY_CONTENT = new byte[0];
+
+    private int id;
+    private final CommandCode commandCode;
+    private final byte serializer;
+    private final byte compressor;
+    private long timeoutMillis;
+    /**
+     * content on the wire, compressed if compressor is set
+     */
+    private byte[] content;
+    /**
+     * decompressed content, created on first read
+     */
+    private transient byte[] decompressed;
+    /**
+     * not serialized, its bytes are copied into content before writing
+     */
+    private transient ByteBuf payload;
+    private long decodeNanos;
+
+    public RpcCommand(int id, CommandCode commandCode, byte serializer, byte compressor, long timeoutMillis, byte[] content) {
+        this.id = id;
+        this.commandCode = commandCode;
+        this.serializer = serializer;
+        this.compressor = compressor;
+        this.timeoutMillis = timeoutMillis;
+        this.content = content == null ? EMPTY_CONTENT : content;
+        this.payload = null;
+    }
+
+    public RpcCommand(int id, CommandCode commandCode, byte serializer, byte compressor, long timeoutMillis, ByteBuf payload) {
+        this.id = id;
+        this.commandCode = commandCode;
+        this.serializer = serializer;
+        this.compressor = compressor;
+        this.timeoutMillis = timeoutMillis;
+        this.payload = payload;
+        this.content = payload == null ? EMPTY_CONTENT : null;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    @Override
+    public byte getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * get compressor
+     * @return byte compressor id code, {@link RpcProtocol#NO_COMPRESSOR} if not compressed
+     */
+    public byte getCompressor() {
+        return compressor;
+    }
+
+    @Override
+    public CommandCode getCommandCode() {
+        return commandCode;
+    }
+
+    @Override
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public void setTimeoutMillis(long time) {
+        this.timeoutMillis = time;
+    }
+
+    @Override
+    public byte[] getContent() {
+        byte[] encoded = getEncodedContent();
+        if(compressor == RpcProtocol.NO_COMPRESSOR || encoded.length == 0){
+            return encoded;
+        }
+        if(decompressed == null){
+            Compressor c = CompressorManager.getCompressor(compressor);
+            if(c == null){
+                throw new IllegalStateException("compressor not registered: " + compressor);
+            }
+            decompressed = c.decompress(encoded);
+        }
+        return decompressed;
+    }
+
+    /**
+     * content as written on the wire, compressed if {@link #getCompressor()} is set
+     * @return byte[]
+     */
+    byte[] getEncodedContent(){
+        if(content == null){
+            // copy payload once
+            content = ByteBufUtil.getBytes(payload);
+        }
+        return content;
+    }
+
+    @Override
+    public ByteBuf getPayload() {
+        return payload;
+    }
+
+    @Override
+    public void retainPayload() {
+        if(payload != null){
+            payload.retain();
+        }
+    }
+
+    @Override
+    public void releasePayload() {
+        if(payload != null){
+            payload.release();
+        }
+    }
+
+    /**
+     * content length without copying payload
+     * @return int
+     */
+    public int contentLength(){
+        return payload != null ? payload.readableBytes() : content.length;
+    }
+
+    @Override
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    @Override
+    public void setDecodeNanos(long decodeNanos) {
+        this.decodeNanos = decodeNanos;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getEncodedContent();
+        out.defaultWriteObject();
+    }
+
+    @Override
+    public String toString() {
+        return "RpcCommand{" +
+                "id=" + id +
+                ", commandCode=" + commandCode.value() +
+                ", serializer=" + serializer +
+                ", compressor=" + compressor +
+                ", timeoutMillis=" + timeoutMillis +
+                ", contentLength=" + (payload != null && payload.refCnt() == 0 ? -1 : contentLength()) +
+                '}';
+    }
+}
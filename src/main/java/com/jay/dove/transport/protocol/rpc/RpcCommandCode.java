@@ -0,0 +1,26 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.command.CommandCode;
+
+/**
+ * <p>
+ *  Command codes reserved by the RPC protocol.
+ *  Reserved codes are negative, custom processors should use non-negative codes.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 10:24
+ */
+public class RpcCommandCode {
+    public static final CommandCode HEART_BEAT = CommandCode.valueOf((short) -1);
+    public static final CommandCode TIMEOUT_RESPONSE = CommandCode.valueOf((short) -2);
+    public static final CommandCode EXCEPTION_RESPONSE = CommandCode.valueOf((short) -3);
+    /**
+     * batch frame, id is the count of frames inside, content is the frames
+     */
+    public static final CommandCode BATCH = CommandCode.valueOf((short) -4);
+    /**
+     * command shed by an overloaded server, safe to retry on another server
+     */
+    public static final CommandCode OVERLOAD_RESPONSE = CommandCode.valueOf((short) -5);
+}
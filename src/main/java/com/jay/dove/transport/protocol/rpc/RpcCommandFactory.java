@@ -0,0 +1,160 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.compress.Compressor;
+import com.jay.dove.compress.CompressorManager;
+import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.serialize.Serializer;
+import com.jay.dove.serialize.SerializerManager;
+import com.jay.dove.transport.command.CommandCode;
+import com.jay.dove.transport.command.CommandFactory;
+import com.jay.dove.transport.command.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  Command factory of the RPC protocol.
+ *  Request bodies can be byte[], String, {@link ByteBuf} or any object supported by the serializer.
+ *  ByteBuf bodies become the command's payload without copying, the command takes over the reference.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 11:20
+ */
+public class RpcCommandFactory implements CommandFactory {
+    /**
+     * default timeout of requests and responses, ms
+     */
+    public static final long DEFAULT_TIMEOUT = 3000;
+
+    /**
+     * heart-beat id, never used by requests
+     */
+    public static final int HEART_BEAT_ID = 0;
+
+    private final AtomicInteger idProvider = new AtomicInteger(0);
+
+    private final byte serializer;
+    private final byte compressor;
+    private final long timeoutMillis;
+
+    public RpcCommandFactory(byte serializer) {
+        this(serializer, RpcProtocol.NO_COMPRESSOR, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * create a command factory
+     * @param serializer serializer code used by typed bodies
+     * @param compressor compressor code used on content, {@link RpcProtocol#NO_COMPRESSOR} to disable
+     * @param timeoutMillis relative timeout of created commands
+     */
+    public RpcCommandFactory(byte serializer, byte compressor, long timeoutMillis) {
+        this.serializer = serializer;
+        this.compressor = compressor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public RemotingCommand createRequest(Object requestBody, CommandCode commandCode) {
+        if(requestBody instanceof ByteBuf){
+            return createWithPayload(nextId(), commandCode, (ByteBuf) requestBody);
+        }
+        return create(nextId(), commandCode, toBytes(requestBody));
+    }
+
+    @Override
+    public <T> RemotingCommand createRequest(T requestBody, CommandCode commandCode, Class<T> clazz) {
+        return create(nextId(), commandCode, serialize(requestBody, clazz));
+    }
+
+    @Override
+    public RemotingCommand createResponse(int id, Object response, CommandCode commandCode) {
+        if(response instanceof ByteBuf){
+            return createWithPayload(id, commandCode, (ByteBuf) response);
+        }
+        return create(id, commandCode, toBytes(response));
+    }
+
+    @Override
+    public <T> RemotingCommand createResponse(int id, T content, Class<T> clazz, CommandCode commandCode) {
+        return create(id, commandCode, serialize(content, clazz));
+    }
+
+    @Override
+    public RemotingCommand createTimeoutResponse(int id, Object response) {
+        return create(id, RpcCommandCode.TIMEOUT_RESPONSE, toBytes(response));
+    }
+
+    @Override
+    public RemotingCommand createExceptionResponse(int id, String errMsg) {
+        return create(id, RpcCommandCode.EXCEPTION_RESPONSE, toBytes(errMsg));
+    }
+
+    @Override
+    public RemotingCommand createExceptionResponse(int id, Throwable cause) {
+        return createExceptionResponse(id, cause.getClass().getName() + ": " + cause.getMessage());
+    }
+
+    @Override
+    public RemotingCommand createOverloadResponse(int id, String errMsg) {
+        return create(id, RpcCommandCode.OVERLOAD_RESPONSE, toBytes(errMsg));
+    }
+
+    /**
+     * create a heart-beat command, heart-beats never expire
+     * @return {@link RemotingCommand}
+     */
+    public RemotingCommand createHeartBeat(){
+        return new RpcCommand(HEART_BEAT_ID, RpcCommandCode.HEART_BEAT, serializer, RpcProtocol.NO_COMPRESSOR, Long.MAX_VALUE, RpcCommand.EMPTY_CONTENT);
+    }
+
+    private RemotingCommand create(int id, CommandCode commandCode, byte[] content){
+        byte compressorCode = RpcProtocol.NO_COMPRESSOR;
+        if(compressor != RpcProtocol.NO_COMPRESSOR && content.length > 0){
+            Compressor c = CompressorManager.getCompressor(compressor);
+            if(c == null){
+                throw new IllegalStateException("compressor not registered: " + compressor);
+            }
+            content = c.compress(content);
+            compressorCode = compressor;
+        }
+        return new RpcCommand(id, commandCode, serializer, compressorCode, System.currentTimeMillis() + timeoutMillis, content);
+    }
+
+    /**
+     * payloads are sent as they are, compression would need a copy
+     */
+    private RemotingCommand createWithPayload(int id, CommandCode commandCode, ByteBuf payload){
+        return new RpcCommand(id, commandCode, serializer, RpcProtocol.NO_COMPRESSOR, System.currentTimeMillis() + timeoutMillis, payload);
+    }
+
+    private int nextId(){
+        int id;
+        while((id = idProvider.incrementAndGet()) == HEART_BEAT_ID){
+            // skip heart-beat id after overflow
+        }
+        return id;
+    }
+
+    private <T> byte[] serialize(T body, Class<T> clazz){
+        Serializer s = SerializerManager.getSerializer(serializer);
+        if(s == null){
+            throw new IllegalStateException("serializer not registered: " + serializer);
+        }
+        return s.serialize(body, clazz);
+    }
+
+    private static byte[] toBytes(Object body){
+        if(body == null){
+            return RpcCommand.EMPTY_CONTENT;
+        }
+        if(body instanceof byte[]){
+            return (byte[]) body;
+        }
+        if(body instanceof String){
+            return ((String) body).getBytes(DoveConfigs.DEFAULT_CHARSET);
+        }
+        throw new IllegalArgumentException("unsupported body type: " + body.getClass() + ", create with a serializable Class instead");
+    }
+}
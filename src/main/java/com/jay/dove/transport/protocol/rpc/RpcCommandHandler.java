@@ -0,0 +1,50 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.command.AbstractCommandHandler;
+import com.jay.dove.transport.command.AbstractProcessor;
+import com.jay.dove.transport.command.CommandFactory;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>
+ *  RPC protocol command handler.
+ *  Heart-beat processor is registered by default.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 11:50
+ */
+public class RpcCommandHandler extends AbstractCommandHandler {
+
+    public RpcCommandHandler(CommandFactory commandFactory) {
+        super(commandFactory);
+        registerProcessor(RpcCommandCode.HEART_BEAT, new HeartBeatProcessor());
+    }
+
+    public RpcCommandHandler(ExecutorService defaultExecutor, CommandFactory commandFactory) {
+        super(defaultExecutor, commandFactory);
+        registerProcessor(RpcCommandCode.HEART_BEAT, new HeartBeatProcessor());
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext context) {
+
+    }
+
+    /**
+     * heart-beats only keep the connection active, nothing to respond
+     */
+    static final class HeartBeatProcessor extends AbstractProcessor{
+        @Override
+        public void process(ChannelHandlerContext context, Object msg) {
+
+        }
+
+        @Override
+        public boolean runInIoThread() {
+            return true;
+        }
+    }
+}
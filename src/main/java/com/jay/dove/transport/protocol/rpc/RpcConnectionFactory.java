@@ -0,0 +1,23 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.codec.Codec;
+import com.jay.dove.transport.connection.AbstractConnectionFactory;
+
+/**
+ * <p>
+ *  Connection factory of the RPC protocol
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 12:03
+ */
+public class RpcConnectionFactory extends AbstractConnectionFactory {
+
+    public RpcConnectionFactory() {
+        this(new RpcCodec());
+    }
+
+    public RpcConnectionFactory(Codec codec) {
+        super(codec, RpcProtocol.CODE);
+    }
+}
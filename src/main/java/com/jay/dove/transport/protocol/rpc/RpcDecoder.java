@@ -0,0 +1,103 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.transport.command.CommandCode;
+import com.jay.dove.transport.protocol.ProtocolDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  RPC protocol decoder.
+ *  Header fields are read in place, the only allocations are the command and its content.
+ *  With {@link DoveConfigs#ZERO_COPY_PAYLOAD} enabled, content is a retained slice of the frame.
+ *  A {@link RpcCommandCode#BATCH} frame is expanded into all of its commands.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 11:05
+ */
+public class RpcDecoder implements ProtocolDecoder {
+
+    private final int maxFrameLength = DoveConfigs.maxFrameLength();
+
+    /**
+     * decode content as retained slices of the frame
+     */
+    private final boolean zeroCopyPayload = DoveConfigs.zeroCopyPayload();
+
+    @Override
+    public int frameLength(ByteBuf in) {
+        if(in.readableBytes() < RpcProtocol.ID_OFFSET){
+            return -1;
+        }
+        return checkFrameLength(in.getInt(in.readerIndex() + RpcProtocol.LENGTH_OFFSET));
+    }
+
+    @Override
+    public void decode(ChannelHandlerContext context, ByteBuf in, List<Object> out) {
+        int frameLength = frameLength(in);
+        if(frameLength == -1 || in.readableBytes() < frameLength){
+            return;
+        }
+        int readerIndex = in.readerIndex();
+        if(in.getShort(readerIndex + RpcProtocol.COMMAND_CODE_OFFSET) == RpcCommandCode.BATCH.value()){
+            decodeBatch(in, in.getInt(readerIndex + RpcProtocol.ID_OFFSET), readerIndex + frameLength, out);
+        }else{
+            decodeCommand(in, frameLength, out);
+        }
+    }
+
+    private void decodeBatch(ByteBuf in, int count, int frameEnd, List<Object> out){
+        if(count < 0 || count > (frameEnd - in.readerIndex()) / RpcProtocol.HEADER_LENGTH){
+            throw new CorruptedFrameException("illegal batch count: " + count);
+        }
+        in.skipBytes(RpcProtocol.HEADER_LENGTH);
+        for(int i = 0; i < count; i++){
+            int readerIndex = in.readerIndex();
+            if(frameEnd - readerIndex < RpcProtocol.HEADER_LENGTH || in.getByte(readerIndex) != RpcProtocol.PROTOCOL_CODE){
+                throw new CorruptedFrameException("malformed frame in batch");
+            }
+            int frameLength = checkFrameLength(in.getInt(readerIndex + RpcProtocol.LENGTH_OFFSET));
+            if(frameLength > frameEnd - readerIndex || in.getShort(readerIndex + RpcProtocol.COMMAND_CODE_OFFSET) == RpcCommandCode.BATCH.value()){
+                throw new CorruptedFrameException("malformed frame in batch");
+            }
+            decodeCommand(in, frameLength, out);
+        }
+        if(in.readerIndex() != frameEnd){
+            throw new CorruptedFrameException("batch frame length mismatch");
+        }
+    }
+
+    private void decodeCommand(ByteBuf in, int frameLength, List<Object> out){
+        // skip protocol code and length
+        in.skipBytes(RpcProtocol.ID_OFFSET);
+        int id = in.readInt();
+        short code = in.readShort();
+        byte serializer = in.readByte();
+        byte compressor = in.readByte();
+        long deadline = in.readLong();
+        int contentLength = frameLength - RpcProtocol.HEADER_LENGTH;
+        // compressed content is decompressed into a new array anyway
+        if(zeroCopyPayload && contentLength > 0 && compressor == RpcProtocol.NO_COMPRESSOR){
+            out.add(new RpcCommand(id, CommandCode.valueOf(code), serializer, compressor, deadline, in.readRetainedSlice(contentLength)));
+            return;
+        }
+        byte[] content = RpcCommand.EMPTY_CONTENT;
+        if(contentLength > 0){
+            content = new byte[contentLength];
+            in.readBytes(content);
+        }
+        out.add(new RpcCommand(id, CommandCode.valueOf(code), serializer, compressor, deadline, content));
+    }
+
+    private int checkFrameLength(int frameLength){
+        if(frameLength < RpcProtocol.HEADER_LENGTH || frameLength > maxFrameLength){
+            throw new CorruptedFrameException("illegal frame length: " + frameLength);
+        }
+        return frameLength;
+    }
+}
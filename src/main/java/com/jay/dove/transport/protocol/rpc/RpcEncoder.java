@@ -0,0 +1,192 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.config.DoveConfigs;
+import com.jay.dove.transport.command.CommandBatch;
+import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.transport.protocol.ProtocolEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *  RPC protocol encoder.
+ *  Writes the frame after the protocol code written by
+ *  {@link com.jay.dove.transport.codec.ProtocolCodeBasedEncoder}.
+ *  A {@link CommandBatch} is written as one {@link RpcCommandCode#BATCH} frame,
+ *  whose content is the complete frames of its commands.
+ *  A batch over max frame length is split into several frames.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 10:40
+ */
+public class RpcEncoder implements ProtocolEncoder {
+    @Override
+    public void encode(ChannelHandlerContext context, Object object, ByteBuf out) {
+        if(object instanceof CommandBatch){
+            encodeBatch((CommandBatch) object, out);
+            return;
+        }
+        if(!(object instanceof RemotingCommand)){
+            throw new EncoderException("unsupported message type: " + object.getClass());
+        }
+        encodeCommand((RemotingCommand) object, out);
+    }
+
+    private void encodeBatch(CommandBatch batch, ByteBuf out){
+        List<List<RemotingCommand>> chunks = split(batch.getCommands());
+        for (int i = 0; i < chunks.size(); i++) {
+            List<RemotingCommand> chunk = chunks.get(i);
+            if(i > 0){
+                // protocol code of the first frame is written by ProtocolCodeBasedEncoder
+                out.writeByte(RpcProtocol.PROTOCOL_CODE);
+            }
+            if(chunk.size() == 1){
+                encodeCommand(chunk.get(0), out);
+                continue;
+            }
+            int frameLength = (int) batchFrameLength(chunk);
+            out.ensureWritable(frameLength - RpcProtocol.LENGTH_OFFSET);
+            writeBatchHeader(chunk.size(), frameLength, out);
+            for (RemotingCommand command : chunk) {
+                out.writeByte(RpcProtocol.PROTOCOL_CODE);
+                encodeCommand(command, out);
+            }
+        }
+    }
+
+    private void encodeCommand(RemotingCommand command, ByteBuf out){
+        ByteBuf payload = command.getPayload();
+        if(payload != null){
+            int contentLength = payload.readableBytes();
+            out.ensureWritable(RpcProtocol.HEADER_LENGTH - RpcProtocol.LENGTH_OFFSET + contentLength);
+            writeHeader(command, contentLength, out);
+            // payload is released by ProtocolCodeBasedEncoder
+            out.writeBytes(payload, payload.readerIndex(), contentLength);
+            return;
+        }
+        byte[] content = encodedContent(command);
+        int contentLength = content == null ? 0 : content.length;
+        // grow once for the whole frame
+        out.ensureWritable(RpcProtocol.HEADER_LENGTH - RpcProtocol.LENGTH_OFFSET + contentLength);
+        writeHeader(command, contentLength, out);
+        if(contentLength > 0){
+            out.writeBytes(content);
+        }
+    }
+
+    @Override
+    public int encodedSize(Object object) {
+        if(object instanceof CommandBatch){
+            long size = 0;
+            for (List<RemotingCommand> chunk : split(((CommandBatch) object).getCommands())) {
+                size += chunk.size() == 1 ? RpcProtocol.HEADER_LENGTH + contentLength(chunk.get(0)) : batchFrameLength(chunk);
+            }
+            return size > Integer.MAX_VALUE ? -1 : (int) size - RpcProtocol.LENGTH_OFFSET;
+        }
+        if(!(object instanceof RemotingCommand)){
+            return -1;
+        }
+        return RpcProtocol.HEADER_LENGTH - RpcProtocol.LENGTH_OFFSET + contentLength((RemotingCommand) object);
+    }
+
+    @Override
+    public boolean isBatchSupported() {
+        return true;
+    }
+
+    /**
+     * content written on the wire, compressed content of {@link RpcCommand} is written as it is
+     * @param command {@link RemotingCommand}
+     * @return byte[]
+     */
+    static byte[] encodedContent(RemotingCommand command){
+        return command instanceof RpcCommand ? ((RpcCommand) command).getEncodedContent() : command.getContent();
+    }
+
+    static int contentLength(RemotingCommand command){
+        ByteBuf payload = command.getPayload();
+        if(payload != null){
+            return payload.readableBytes();
+        }
+        byte[] content = encodedContent(command);
+        return content == null ? 0 : content.length;
+    }
+
+    /**
+     * length of a batch frame, including the protocol code
+     * @param commands commands in batch
+     * @return frame length
+     */
+    static long batchFrameLength(List<RemotingCommand> commands){
+        long frameLength = RpcProtocol.HEADER_LENGTH;
+        for (RemotingCommand command : commands) {
+            frameLength += RpcProtocol.HEADER_LENGTH + contentLength(command);
+        }
+        return frameLength;
+    }
+
+    /**
+     * split commands into chunks whose batch frames don't exceed max frame length,
+     * receiver rejects oversized frames and would break the connection.
+     * A command too large for a batch gets a chunk of its own and is written as a single frame.
+     * @param commands commands in batch
+     * @return chunks, each written as one frame
+     */
+    static List<List<RemotingCommand>> split(List<RemotingCommand> commands){
+        long maxFrameLength = DoveConfigs.maxFrameLength();
+        if(batchFrameLength(commands) <= maxFrameLength){
+            return Collections.singletonList(commands);
+        }
+        List<List<RemotingCommand>> chunks = new ArrayList<>();
+        int from = 0;
+        long frameLength = RpcProtocol.HEADER_LENGTH;
+        for (int i = 0; i < commands.size(); i++) {
+            long length = RpcProtocol.HEADER_LENGTH + contentLength(commands.get(i));
+            if(i > from && frameLength + length > maxFrameLength){
+                chunks.add(commands.subList(from, i));
+                from = i;
+                frameLength = RpcProtocol.HEADER_LENGTH;
+            }
+            frameLength += length;
+        }
+        chunks.add(commands.subList(from, commands.size()));
+        return chunks;
+    }
+
+    /**
+     * write batch header fields after protocol code
+     * @param count commands count
+     * @param frameLength batch frame length
+     * @param out output buffer
+     */
+    static void writeBatchHeader(int count, int frameLength, ByteBuf out){
+        out.writeInt(frameLength);
+        out.writeInt(count);
+        out.writeShort(RpcCommandCode.BATCH.value());
+        out.writeByte(0);
+        out.writeByte(RpcProtocol.NO_COMPRESSOR);
+        // deadline of each command is in its own frame
+        out.writeLong(Long.MAX_VALUE);
+    }
+
+    /**
+     * write header fields after protocol code
+     * @param command {@link RemotingCommand}
+     * @param contentLength content length
+     * @param out output buffer
+     */
+    static void writeHeader(RemotingCommand command, int contentLength, ByteBuf out){
+        out.writeInt(RpcProtocol.HEADER_LENGTH + contentLength);
+        out.writeInt(command.getId());
+        out.writeShort(command.getCommandCode().value());
+        out.writeByte(command.getSerializer());
+        out.writeByte(command instanceof RpcCommand ? ((RpcCommand) command).getCompressor() : RpcProtocol.NO_COMPRESSOR);
+        out.writeLong(command.getTimeoutMillis());
+    }
+}
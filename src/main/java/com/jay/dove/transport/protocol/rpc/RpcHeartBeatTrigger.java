@@ -0,0 +1,41 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.HeartBeatTrigger;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ *  RPC protocol heart-beat trigger.
+ *  Client side sends a heart-beat when idle and closes the channel if it fails,
+ *  server side relies on the client's heart-beats.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 11:42
+ */
+@Slf4j
+public class RpcHeartBeatTrigger implements HeartBeatTrigger {
+    private final RpcCommandFactory commandFactory;
+
+    public RpcHeartBeatTrigger(RpcCommandFactory commandFactory) {
+        this.commandFactory = commandFactory;
+    }
+
+    @Override
+    public void heartBeatTriggered(ChannelHandlerContext context) {
+        Channel channel = context.channel();
+        // accepted channels have a parent, they are server side
+        if(channel.parent() != null || !channel.isActive()){
+            return;
+        }
+        channel.writeAndFlush(commandFactory.createHeartBeat()).addListener((ChannelFutureListener) future->{
+            if(!future.isSuccess()){
+                log.warn("heart-beat failed, closing channel: {}", channel.remoteAddress());
+                channel.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.command.CommandBatch;
+import com.jay.dove.transport.command.RemotingCommand;
+import com.jay.dove.transport.protocol.ProtocolM2mEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  RPC protocol Message to Message encoder.
+ *  Header goes into a small pooled buffer, content or payload is passed on without copying.
+ *  Headers of a {@link CommandBatch} share one buffer and are passed on as slices between contents.
+ *  A batch over max frame length is split into several frames.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 10:52
+ */
+public class RpcM2mEncoder implements ProtocolM2mEncoder {
+    @Override
+    public void encode(ChannelHandlerContext context, Object o, List<Object> out) {
+        if(o instanceof CommandBatch){
+            encodeBatch(context, (CommandBatch) o, out);
+            return;
+        }
+        if(!(o instanceof RemotingCommand)){
+            throw new EncoderException("unsupported message type: " + o.getClass());
+        }
+        RemotingCommand command = (RemotingCommand) o;
+        ByteBuf payload = command.getPayload();
+        ByteBuf header = context.alloc().ioBuffer(RpcProtocol.HEADER_LENGTH);
+        header.writeByte(RpcProtocol.PROTOCOL_CODE);
+        if(payload != null){
+            RpcEncoder.writeHeader(command, payload.readableBytes(), header);
+            out.add(header);
+            // command's own reference is released by ProtocolBasedM2mEncoder
+            out.add(payload.retainedDuplicate());
+            return;
+        }
+        byte[] content = RpcEncoder.encodedContent(command);
+        int contentLength = content == null ? 0 : content.length;
+        RpcEncoder.writeHeader(command, contentLength, header);
+        out.add(header);
+        if(contentLength > 0){
+            out.add(Unpooled.wrappedBuffer(content));
+        }
+    }
+
+    @Override
+    public boolean isBatchSupported() {
+        return true;
+    }
+
+    private void encodeBatch(ChannelHandlerContext context, CommandBatch batch, List<Object> out){
+        for (List<RemotingCommand> chunk : RpcEncoder.split(batch.getCommands())) {
+            if(chunk.size() == 1){
+                encode(context, chunk.get(0), out);
+            }else{
+                encodeChunk(context, chunk, out);
+            }
+        }
+    }
+
+    private void encodeChunk(ChannelHandlerContext context, List<RemotingCommand> commands, List<Object> out){
+        int frameLength = (int) RpcEncoder.batchFrameLength(commands);
+        ByteBuf headers = context.alloc().ioBuffer(RpcProtocol.HEADER_LENGTH * (commands.size() + 1));
+        try{
+            headers.writeByte(RpcProtocol.PROTOCOL_CODE);
+            RpcEncoder.writeBatchHeader(commands.size(), frameLength, headers);
+            int sliceStart = 0;
+            for (RemotingCommand command : commands) {
+                headers.writeByte(RpcProtocol.PROTOCOL_CODE);
+                ByteBuf payload = command.getPayload();
+                byte[] content = payload == null ? RpcEncoder.encodedContent(command) : null;
+                int contentLength = RpcEncoder.contentLength(command);
+                RpcEncoder.writeHeader(command, contentLength, headers);
+                if(contentLength == 0){
+                    continue;
+                }
+                // headers before this content
+                out.add(headers.retainedSlice(sliceStart, headers.writerIndex() - sliceStart));
+                sliceStart = headers.writerIndex();
+                out.add(payload != null ? payload.retainedDuplicate() : Unpooled.wrappedBuffer(content));
+            }
+            if(sliceStart < headers.writerIndex()){
+                out.add(headers.retainedSlice(sliceStart, headers.writerIndex() - sliceStart));
+            }
+        }finally {
+            headers.release();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.jay.dove.transport.protocol.rpc;
+
+import com.jay.dove.transport.HeartBeatTrigger;
+import com.jay.dove.transport.command.CommandFactory;
+import com.jay.dove.transport.command.CommandHandler;
+import com.jay.dove.transport.protocol.*;
+
+/**
+ * <p>
+ *  Built-in binary RPC protocol, protocol code 22.
+ *  Frame layout, all numbers are big-endian:
+ *  <pre>
+ *  | protocol code(1) | length(4) | id(4) | command code(2) | serializer(1) | compressor(1) | deadline(8) | content |
+ *  </pre>
+ *  length is the total frame length, protocol code included.
+ *  deadline is an absolute timestamp in milliseconds.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/14 10:20
+ */
+public class RpcProtocol implements Protocol {
+    public static final byte PROTOCOL_CODE = 22;
+    public static final ProtocolCode CODE = ProtocolCode.fromValue(PROTOCOL_CODE);
+
+    /**
+     * header field offsets
+     */
+    public static final int LENGTH_OFFSET = 1;
+    public static final int ID_OFFSET = 5;
+    public static final int COMMAND_CODE_OFFSET = 9;
+    public static final int SERIALIZER_OFFSET = 11;
+    public static final int COMPRESSOR_OFFSET = 12;
+    public static final int DEADLINE_OFFSET = 13;
+    /**
+     * fixed header length, protocol code included
+     */
+    public static final int HEADER_LENGTH = 21;
+
+    /**
+     * compressor code of uncompressed content
+     */
+    public static final byte NO_COMPRESSOR = 0;
+
+    private final RpcEncoder encoder;
+    private final RpcM2mEncoder m2mEncoder;
+    private final RpcDecoder decoder;
+    private final CommandHandler commandHandler;
+    private final RpcCommandFactory commandFactory;
+    private final RpcHeartBeatTrigger heartBeatTrigger;
+
+    public RpcProtocol(RpcCommandFactory commandFactory) {
+        this(new RpcCommandHandler(commandFactory), commandFactory);
+    }
+
+    public RpcProtocol(CommandHandler commandHandler, RpcCommandFactory commandFactory) {
+        this.encoder = new RpcEncoder();
+        this.m2mEncoder = new RpcM2mEncoder();
+        this.decoder = new RpcDecoder();
+        this.commandHandler = commandHandler;
+        this.commandFactory = commandFactory;
+        this.heartBeatTrigger = new RpcHeartBeatTrigger(commandFactory);
+    }
+
+    @Override
+    public ProtocolEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public ProtocolM2mEncoder getM2mEncoder() {
+        return m2mEncoder;
+    }
+
+    @Override
+    public ProtocolDecoder getDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public ProtocolCode getCode() {
+        return CODE;
+    }
+
+    @Override
+    public CommandHandler getCommandHandler() {
+        return commandHandler;
+    }
+
+    @Override
+    public HeartBeatTrigger getHeartBeatTrigger() {
+        return heartBeatTrigger;
+    }
+
+    @Override
+    public CommandFactory getCommandFactory() {
+        return commandFactory;
+    }
+}
@@ -0,0 +1,139 @@
+package com.jay.dove.util;
+
+import io.netty.util.internal.PlatformDependent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *  Keyed ordered executor.
+ *  Tasks of the same key run one by one in submission order, tasks of different keys run in parallel.
+ *  Keys are hashed to a fixed number of serial lanes, so no per-key state is created or removed,
+ *  keys sharing a lane are serialized together.
+ *  Lanes run on a work-stealing pool, a lane gives up its thread after a few tasks to keep others moving.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/23 10:20
+ */
+@Slf4j
+public class KeyedOrderedExecutor {
+    /**
+     * max tasks a lane runs before it is rescheduled
+     */
+    private static final int MAX_TASKS_PER_RUN = 64;
+
+    private final Executor pool;
+    private final Lane[] lanes;
+    private final int mask;
+
+    public KeyedOrderedExecutor(Executor pool, int lanes) {
+        if(lanes <= 0){
+            throw new IllegalArgumentException("lanes must be positive: " + lanes);
+        }
+        this.pool = pool;
+        int size = 1;
+        while(size < lanes){
+            size <<= 1;
+        }
+        this.lanes = new Lane[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * create an executor on a work-stealing pool
+     * @param parallelism threads of pool
+     * @param lanes serial lanes, rounded up to power of 2
+     * @return {@link KeyedOrderedExecutor}
+     */
+    public static KeyedOrderedExecutor newWorkStealingExecutor(int parallelism, int lanes){
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ForkJoinPool pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("dove-ordered-executor-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+        return new KeyedOrderedExecutor(pool, lanes);
+    }
+
+    /**
+     * execute a task after earlier tasks of its key
+     * @param key ordering key
+     * @param task {@link Runnable}
+     * @throws RejectedExecutionException pool is shutdown
+     */
+    public void execute(Object key, Runnable task){
+        lanes[spread(key.hashCode()) & mask].add(task);
+    }
+
+    /**
+     * shutdown the pool, queued tasks are not run
+     */
+    public void shutdown(){
+        if(pool instanceof ExecutorService){
+            ((ExecutorService) pool).shutdown();
+        }
+    }
+
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+
+    final class Lane implements Runnable{
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        void add(Runnable task){
+            tasks.offer(task);
+            schedule();
+        }
+
+        private void schedule(){
+            if(scheduled.compareAndSet(false, true)){
+                try{
+                    pool.execute(this);
+                }catch (RejectedExecutionException e){
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try{
+                Runnable task;
+                int count = 0;
+                while(count++ < MAX_TASKS_PER_RUN && (task = tasks.poll()) != null){
+                    try{
+                        task.run();
+                    }catch (Throwable e){
+                        log.error("ordered task error ", e);
+                    }
+                }
+            }finally {
+                scheduled.set(false);
+            }
+            // tasks left or added after the last poll
+            if(!tasks.isEmpty()){
+                try{
+                    schedule();
+                }catch (RejectedExecutionException e){
+                    log.warn("ordered executor is shutdown, {} tasks dropped", tasks.size());
+                }
+            }
+        }
+    }
+}
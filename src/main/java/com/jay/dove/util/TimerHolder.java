@@ -1,19 +1,41 @@
 package com.jay.dove.util;
 
+import com.jay.dove.config.DoveConfigs;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
- *  Singleton HashedWheelTimer
+ *  Sharded HashedWheelTimers.
+ *  Timeouts are spread across {@link DoveConfigs#TIMER_SHARDS} wheels by the scheduling thread,
+ *  so one timer thread doesn't expire every request.
  * </p>
  *
  * @author Jay
  * @date 2022/01/13 14:38
  */
 public class TimerHolder {
-    static HashedWheelTimer INSTANCE = new HashedWheelTimer();
+    static final HashedWheelTimer[] TIMERS;
+    static{
+        int shards = Math.max(1, DoveConfigs.timerShards());
+        TIMERS = new HashedWheelTimer[shards];
+        for(int i = 0; i < shards; i++){
+            TIMERS[i] = new HashedWheelTimer(new DefaultThreadFactory("dove-timer-" + i, true),
+                    DoveConfigs.timerTickMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
 
+    /**
+     * get the timer of current thread's shard
+     * @return {@link HashedWheelTimer}
+     */
     public static HashedWheelTimer getTimer(){
-        return INSTANCE;
+        HashedWheelTimer[] timers = TIMERS;
+        if(timers.length == 1){
+            return timers[0];
+        }
+        return timers[(int) (Thread.currentThread().getId() % timers.length)];
     }
 }
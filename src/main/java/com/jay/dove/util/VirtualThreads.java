@@ -0,0 +1,88 @@
+package com.jay.dove.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ *  Virtual thread support.
+ *  Dove is built for Java 8, virtual threads of Java 21+ are looked up by reflection at runtime.
+ * </p>
+ *
+ * @author Jay
+ * @date 2022/02/19 10:20
+ */
+public class VirtualThreads {
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), null before Java 21
+     */
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+    /**
+     * Thread.isVirtual(), null before Java 21.
+     * A constant method handle is inlined by JIT, avoiding reflective invocation on each check
+     */
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    private static Method findMethod(Class<?> clazz, String name){
+        try{
+            return clazz.getMethod(name);
+        }catch (NoSuchMethodException e){
+            return null;
+        }
+    }
+
+    private static MethodHandle findIsVirtual(){
+        try{
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        }catch (ReflectiveOperationException e){
+            return null;
+        }
+    }
+
+    /**
+     * check if current runtime supports virtual threads
+     * @return boolean
+     */
+    public static boolean isSupported(){
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * check if a thread is virtual
+     * @param thread {@link Thread}
+     * @return false if virtual threads are not supported
+     */
+    public static boolean isVirtual(Thread thread){
+        if(IS_VIRTUAL == null){
+            return false;
+        }
+        try{
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        }catch (Throwable e){
+            return false;
+        }
+    }
+
+    /**
+     * create an executor that starts a virtual thread for each task
+     * @return {@link ExecutorService}
+     * @throws UnsupportedOperationException runtime older than Java 21, or preview features disabled on Java 19 and 20
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(){
+        if(!isSupported()){
+            throw new UnsupportedOperationException("virtual threads require Java 21+, current: " + System.getProperty("java.version"));
+        }
+        try{
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        }catch (InvocationTargetException e){
+            throw new UnsupportedOperationException("failed to create virtual thread executor", e.getCause());
+        }catch (ReflectiveOperationException e){
+            throw new UnsupportedOperationException("failed to create virtual thread executor", e);
+        }
+    }
+}